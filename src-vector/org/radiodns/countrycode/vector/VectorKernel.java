@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode.vector;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import org.radiodns.countrycode.BatchResolver;
+
+/**
+ * This class resolves arrays for BatchResolver with the JDK Vector API,
+ * computing the cell index of a vector of elements at once and reading their
+ * cells with a single gather, which uses the gather instructions of the CPU
+ * where it has them. Elements left over after the last whole vector are
+ * resolved one at a time.
+ * 
+ * BatchResolver loads this class if it is on the classpath, so it is not used
+ * directly. It is kept in its own source root, compiled against the library
+ * with --add-modules jdk.incubator.vector, and requires Java 16 or later run
+ * with the same option; the rest of the library does not depend on it.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public final class VectorKernel implements BatchResolver.Kernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public void gather(int[] cells, int[] locations, int locationCount, int[] serviceIds,
+			int[] gccs, int offset, int length) {
+		int i = offset;
+		for (int upper = offset + SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			IntVector location = IntVector.fromArray(SPECIES, locations, i);
+			// compared unsigned, so that negative locations are also out of range
+			location = location.blend(locationCount, location.compare(VectorOperators.UNSIGNED_GT,
+					locationCount)).lanewise(VectorOperators.LSHL, 4);
+			IntVector countryId = IntVector.fromArray(SPECIES, serviceIds, i)
+					.lanewise(VectorOperators.LSHR, 12)
+					.and(0xF);
+			// the indexes are staged in the output, then replaced by the cells
+			// they select
+			location.or(countryId).intoArray(gccs, i);
+			IntVector.fromArray(SPECIES, cells, 0, gccs, i).intoArray(gccs, i);
+		}
+		for (int end = offset + length; i < end; i++) {
+			int location = locations[i] < 0 || locations[i] > locationCount ? locationCount
+					: locations[i];
+			gccs[i] = cells[(location << 4) | ((serviceIds[i] >>> 12) & 0xF)];
+		}
+	}
+
+	@Override
+	public void gather(int[] cells, int base, int[] serviceIds, int[] gccs, int offset,
+			int length) {
+		int i = offset;
+		for (int upper = offset + SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			IntVector.fromArray(SPECIES, serviceIds, i)
+					.lanewise(VectorOperators.LSHR, 12)
+					.and(0xF)
+					.or(base)
+					.intoArray(gccs, i);
+			IntVector.fromArray(SPECIES, cells, 0, gccs, i).intoArray(gccs, i);
+		}
+		for (int end = offset + length; i < end; i++) {
+			gccs[i] = cells[base | ((serviceIds[i] >>> 12) & 0xF)];
+		}
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class resolves whole arrays of RDS PI Codes or 16-bit DAB SIds at once,
+ * for offline jobs such as telemetry processing, writing the Global Country
+ * Code (GCC) of each as a packed integer in the form 0xCEE (Country ID, ECC).
+ * 
+ * The answers of the CountryTable are compiled into flat integer arrays
+ * indexed on (location << 4 | Country ID), so that resolving an element is a
+ * range check, a shift, a mask and a single array read with no parsing or
+ * allocation. Locations out of range and unresolvable combinations are
+ * written as UNRESOLVED; where more than one country matches, the first is
+ * written, as with SessionStore. Instances are immutable and thread-safe.
+ * 
+ * The array reads are gathers, which the JIT compiler does not vectorise by
+ * itself. Where the JDK Vector API is available (Java 16 or later, run with
+ * --add-modules jdk.incubator.vector), the Kernel in the
+ * org.radiodns.countrycode.vector package, built from the src-vector source
+ * root, computes the indexes and gathers the cells several elements at a
+ * time. Otherwise, e.g. on Java 8 or Android, a scalar loop gives the same
+ * results; isVectorised() reports which is used.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class BatchResolver {
+
+	/**
+	 * Written for elements which do not resolve
+	 */
+	public static final int UNRESOLVED = -1;
+
+	private static final int ISO_LOCATIONS = 26 * 26;
+	private static final int ECC_LOCATIONS = 256;
+	private static final int MCC_LOCATIONS = 1000;
+
+	// each with one more location, whose cells are all UNRESOLVED, read in
+	// place of any location out of range, e.g. -1 for an unknown country
+	private final int[] mCountryCells = new int[(ISO_LOCATIONS + 1) * 16];
+	private final int[] mEccCells = new int[(ECC_LOCATIONS + 1) * 16];
+	private final int[] mMccCells = new int[(MCC_LOCATIONS + 1) * 16];
+	private final Kernel mKernel;
+
+	private static final String VECTOR_KERNEL = "org.radiodns.countrycode.vector.VectorKernel";
+	private static final Kernel sVectorKernel = loadVectorKernel();
+
+	/**
+	 * Computes gccs[i] = cells[(locations[i] << 4) | Country ID of
+	 * serviceIds[i]] for a range of elements, reading location locationCount,
+	 * whose cells are UNRESOLVED, for locations outside 0 to locationCount - 1.
+	 * Implemented outside this package only by the optional Vector API kernel.
+	 */
+	public interface Kernel {
+
+		/**
+		 * Resolve each element from its own location
+		 */
+		void gather(int[] cells, int[] locations, int locationCount, int[] serviceIds, int[] gccs,
+				int offset, int length);
+
+		/**
+		 * Resolve every element from a single location, already shifted into
+		 * base
+		 */
+		void gather(int[] cells, int base, int[] serviceIds, int[] gccs, int offset, int length);
+	}
+
+	/**
+	 * Compile the table, using the Vector API kernel if it is available
+	 * 
+	 * @param table 	CountryTable to compile
+	 */
+	public BatchResolver(CountryTable table) {
+		this(table, true);
+	}
+
+	/**
+	 * @param table 		CountryTable to compile
+	 * @param vectorised 	false to use the scalar loop even if the Vector API
+	 *            			kernel is available
+	 */
+	public BatchResolver(CountryTable table, boolean vectorised) {
+		if (table == null) {
+			throw new IllegalArgumentException("CountryTable must not be null");
+		}
+		mKernel = vectorised && sVectorKernel != null ? sVectorKernel : new ScalarKernel();
+		Arrays.fill(mCountryCells, UNRESOLVED);
+		Arrays.fill(mEccCells, UNRESOLVED);
+		Arrays.fill(mMccCells, UNRESOLVED);
+		for (int iso = 0; iso < ISO_LOCATIONS; iso++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				Country[] matches = table.getCountriesForCountryId(iso, countryId);
+				if (matches != null && matches.length > 0) {
+					int ecc = CountryTable.parseEcc(matches[0].getECC());
+					if (ecc >= 0) {
+						mCountryCells[(iso << 4) | countryId] = (countryId << 8) | ecc;
+					}
+				}
+			}
+		}
+		for (int ecc = 0; ecc < ECC_LOCATIONS; ecc++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				if (table.getCountryForGCC(countryId, ecc) != null) {
+					mEccCells[(ecc << 4) | countryId] = (countryId << 8) | ecc;
+				}
+			}
+		}
+		for (int mcc = 0; mcc < MCC_LOCATIONS; mcc++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				List<Country> matches = table.getCountriesForMcc(mcc, countryId);
+				if (matches != null && !matches.isEmpty()) {
+					int ecc = CountryTable.parseEcc(matches.get(0).getECC());
+					if (ecc >= 0) {
+						mMccCells[(mcc << 4) | countryId] = (countryId << 8) | ecc;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return boolean 	true if arrays are resolved by the Vector API kernel
+	 */
+	public boolean isVectorised() {
+		return !(mKernel instanceof ScalarKernel);
+	}
+
+	/**
+	 * Convert an ISO Country Code to the index used by
+	 * resolveWithCountryCode()
+	 * 
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @return int 				Index, or -1 if not a two-letter code
+	 */
+	public static int isoCountryIndex(String isoCountryCode) {
+		return CountryTable.isoCountryIndex(isoCountryCode);
+	}
+
+	/**
+	 * Resolve each element from the location of the device, as
+	 * resolveGCCWithCountryCode() does
+	 * 
+	 * @param isoCountryIndexes 	Location of each element, see isoCountryIndex()
+	 * @param serviceIds 			RDS PI Code or 16-bit DAB SId of each element
+	 * @param gccs 					Output, the packed GCC or UNRESOLVED of each
+	 *            					element
+	 * @param offset 				Index of the first element in each array
+	 * @param length 				Number of elements to resolve
+	 */
+	public void resolveWithCountryCode(int[] isoCountryIndexes, int[] serviceIds, int[] gccs,
+			int offset, int length) {
+		checkBounds(isoCountryIndexes, serviceIds, gccs, offset, length);
+		mKernel.gather(mCountryCells, isoCountryIndexes, ISO_LOCATIONS, serviceIds, gccs, offset,
+				length);
+	}
+
+	/**
+	 * Resolve every element from a single location of the device, as
+	 * resolveGCCWithCountryCode() does
+	 * 
+	 * @param isoCountryIndex 	Location of every element, see isoCountryIndex()
+	 * @param serviceIds 		RDS PI Code or 16-bit DAB SId of each element
+	 * @param gccs 				Output, the packed GCC or UNRESOLVED of each
+	 *            				element
+	 * @param offset 			Index of the first element in each array
+	 * @param length 			Number of elements to resolve
+	 */
+	public void resolveWithCountryCode(int isoCountryIndex, int[] serviceIds, int[] gccs,
+			int offset, int length) {
+		checkBounds(serviceIds, serviceIds, gccs, offset, length);
+		mKernel.gather(mCountryCells, location(isoCountryIndex, ISO_LOCATIONS) << 4, serviceIds,
+				gccs, offset, length);
+	}
+
+	/**
+	 * Resolve each element from the Extended Country Code (ECC) received with
+	 * it, as resolveGCCWithECC() does
+	 * 
+	 * @param eccs 			ECC of each element
+	 * @param serviceIds 	RDS PI Code or 16-bit DAB SId of each element
+	 * @param gccs 			Output, the packed GCC or UNRESOLVED of each element
+	 * @param offset 		Index of the first element in each array
+	 * @param length 		Number of elements to resolve
+	 */
+	public void resolveWithEcc(int[] eccs, int[] serviceIds, int[] gccs, int offset, int length) {
+		checkBounds(eccs, serviceIds, gccs, offset, length);
+		mKernel.gather(mEccCells, eccs, ECC_LOCATIONS, serviceIds, gccs, offset, length);
+	}
+
+	/**
+	 * Resolve each element from the Mobile Country Code (MCC) of the network
+	 * the device is on, as resolveGCCWithMobileCountryCode() does
+	 * 
+	 * @param mccs 			MCC of each element, 0-999
+	 * @param serviceIds 	RDS PI Code or 16-bit DAB SId of each element
+	 * @param gccs 			Output, the packed GCC or UNRESOLVED of each element
+	 * @param offset 		Index of the first element in each array
+	 * @param length 		Number of elements to resolve
+	 */
+	public void resolveWithMcc(int[] mccs, int[] serviceIds, int[] gccs, int offset, int length) {
+		checkBounds(mccs, serviceIds, gccs, offset, length);
+		mKernel.gather(mMccCells, mccs, MCC_LOCATIONS, serviceIds, gccs, offset, length);
+	}
+
+	/**
+	 * Resolve a single element from the location of the device
+	 */
+	int resolveWithCountryCode(int isoCountryIndex, int countryId) {
+		return mCountryCells[(location(isoCountryIndex, ISO_LOCATIONS) << 4) | (countryId & 0xF)];
+	}
+
+	/**
+	 * Resolve a single element from the ECC received with it
+	 */
+	int resolveWithEcc(int ecc, int countryId) {
+		return mEccCells[(location(ecc, ECC_LOCATIONS) << 4) | (countryId & 0xF)];
+	}
+
+	/**
+	 * Resolve a single element from the MCC of the network the device is on
+	 */
+	int resolveWithMcc(int mcc, int countryId) {
+		return mMccCells[(location(mcc, MCC_LOCATIONS) << 4) | (countryId & 0xF)];
+	}
+
+	/**
+	 * @return int 	The location, or locationCount, whose cells are
+	 *         		UNRESOLVED, if it is out of range
+	 */
+	private static int location(int location, int locationCount) {
+		return location < 0 || location > locationCount ? locationCount : location;
+	}
+
+	private static void checkBounds(int[] locations, int[] serviceIds, int[] gccs, int offset,
+			int length) {
+		if (locations == null || serviceIds == null || gccs == null) {
+			throw new IllegalArgumentException("Arrays must not be null");
+		}
+		if (offset < 0 || length < 0 || offset + length > locations.length
+				|| offset + length > serviceIds.length || offset + length > gccs.length) {
+			throw new ArrayIndexOutOfBoundsException("Offset and length exceed the arrays");
+		}
+	}
+
+	/**
+	 * Load the Vector API kernel, or return null if this runtime cannot
+	 */
+	private static Kernel loadVectorKernel() {
+		try {
+			return (Kernel) Class.forName(VECTOR_KERNEL).getConstructor().newInstance();
+		} catch (Exception e) {
+			// not on the classpath, e.g. on Android
+			return null;
+		} catch (LinkageError e) {
+			// before Java 16, or jdk.incubator.vector not added
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves one element at a time, wherever the Vector API is unavailable
+	 */
+	private static final class ScalarKernel implements Kernel {
+
+		@Override
+		public void gather(int[] cells, int[] locations, int locationCount, int[] serviceIds,
+				int[] gccs, int offset, int length) {
+			for (int i = offset, end = offset + length; i < end; i++) {
+				gccs[i] = cells[(location(locations[i], locationCount) << 4)
+						| ((serviceIds[i] >>> 12) & 0xF)];
+			}
+		}
+
+		@Override
+		public void gather(int[] cells, int base, int[] serviceIds, int[] gccs, int offset,
+				int length) {
+			for (int i = offset, end = offset + length; i < end; i++) {
+				gccs[i] = cells[base | ((serviceIds[i] >>> 12) & 0xF)];
+			}
+		}
+	}
+}
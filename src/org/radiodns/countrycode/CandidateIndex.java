@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class holds, for each Country ID, the Global Country Codes (GCC) a
+ * station could have when the location of the device is unknown, e.g. for
+ * headless receivers with only an RDS PI Code. Each list is computed when the
+ * index is built, so a lookup is a single array read.
+ * 
+ * The candidates can be narrowed to a region, given as ISO Country Codes and
+ * ECCs, and ordered by a prior weight for each country so that the most likely
+ * GCCs come first. Countries sharing a GCC produce a single candidate, so each
+ * candidate needs exactly one downstream lookup. Instances are immutable and
+ * thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class CandidateIndex {
+
+	// shared by all callers, so copied whenever they are handed out
+	private final Result[][] mCandidates = new Result[16][];
+
+	/**
+	 * Builds a CandidateIndex from a CountryTable
+	 */
+	public static class Builder {
+		private final CountryTable mTable;
+		private final Set<String> mCountries = new HashSet<String>();
+		private final Set<Integer> mEccs = new HashSet<Integer>();
+		private final Map<String, Double> mWeights = new HashMap<String, Double>();
+
+		/**
+		 * @param table 	CountryTable supplying the candidates
+		 */
+		public Builder(CountryTable table) {
+			if (table == null) {
+				throw new IllegalArgumentException("CountryTable must not be null");
+			}
+			mTable = table;
+		}
+
+		/**
+		 * Add a country to the region. If no countries or ECCs are added, all
+		 * countries in the table are candidates.
+		 * 
+		 * @param isoCountryCode 	ISO 3166 two-letter country code
+		 * @return Builder
+		 */
+		public Builder includeCountry(String isoCountryCode) {
+			if (isoCountryCode == null || !isoCountryCode.matches("(?i)^[A-Z]{2}$")) {
+				throw new IllegalArgumentException(
+						"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+			}
+			mCountries.add(isoCountryCode.toUpperCase(Locale.ENGLISH));
+			return this;
+		}
+
+		/**
+		 * Add every country using an Extended Country Code (ECC) to the region,
+		 * e.g. E0 to E4 for Europe
+		 * 
+		 * @param ecc 	Extended Country Code (ECC)
+		 * @return Builder
+		 */
+		public Builder includeEcc(String ecc) {
+			int value = CountryTable.parseEcc(ecc);
+			if (value < 0) {
+				throw new IllegalArgumentException(
+						"Invalid ECC value. Value must be a valid hexadecimal Extended Country Code (ECC)");
+			}
+			mEccs.add(value);
+			return this;
+		}
+
+		/**
+		 * Set the prior weight of a country, e.g. its share of the expected
+		 * audience. Candidates are ordered by descending weight and then by
+		 * their order in the table; countries without a weight have 0.
+		 * 
+		 * @param isoCountryCode 	ISO 3166 two-letter country code
+		 * @param weight 			Non-negative weight
+		 * @return Builder
+		 */
+		public Builder setWeight(String isoCountryCode, double weight) {
+			if (isoCountryCode == null || !isoCountryCode.matches("(?i)^[A-Z]{2}$")) {
+				throw new IllegalArgumentException(
+						"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+			}
+			if (!(weight >= 0)) {
+				throw new IllegalArgumentException("Weight must not be negative");
+			}
+			mWeights.put(isoCountryCode.toUpperCase(Locale.ENGLISH), weight);
+			return this;
+		}
+
+		/**
+		 * Compute the candidate lists
+		 * 
+		 * @return CandidateIndex
+		 */
+		public CandidateIndex build() {
+			return new CandidateIndex(this);
+		}
+
+		private boolean isIncluded(Country country, int ecc) {
+			if (mCountries.isEmpty() && mEccs.isEmpty()) {
+				return true;
+			}
+			return mCountries.contains(country.getISOCountryCode()) || mEccs.contains(ecc);
+		}
+
+		private double getWeight(Country country) {
+			Double weight = mWeights.get(country.getISOCountryCode());
+			return weight == null ? 0 : weight.doubleValue();
+		}
+	}
+
+	private CandidateIndex(final Builder builder) {
+		for (int countryId = 0; countryId < 16; countryId++) {
+			String broadcastCountryCode = Integer.toHexString(countryId).toUpperCase(Locale.ENGLISH);
+			List<Country> countries = new ArrayList<Country>();
+			for (Country country : builder.mTable.getCountries()) {
+				int ecc = CountryTable.parseEcc(country.getECC());
+				if (ecc >= 0 && CountryTable.compareCountryIds(country, broadcastCountryCode)
+						&& builder.isIncluded(country, ecc)) {
+					countries.add(country);
+				}
+			}
+
+			// stable sort, so equal weights keep the table order
+			Collections.sort(countries, new Comparator<Country>() {
+				@Override
+				public int compare(Country lhs, Country rhs) {
+					return Double.compare(builder.getWeight(rhs), builder.getWeight(lhs));
+				}
+			});
+
+			List<Result> candidates = new ArrayList<Result>();
+			Set<String> gccs = new HashSet<String>();
+			for (Country country : countries) {
+				Result result = new Result(broadcastCountryCode, country.getECC().toUpperCase(Locale.ENGLISH),
+						country.getISOCountryCode());
+				if (gccs.add(result.gcc)) {
+					candidates.add(result);
+				}
+			}
+			mCandidates[countryId] = candidates.toArray(new Result[candidates.size()]);
+		}
+	}
+
+	/**
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return List<Result> 	New list of candidates, most likely first, which
+	 *         					may be empty
+	 */
+	public List<Result> getCandidates(int countryId) {
+		return getCandidates(countryId, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param maxResults 		Maximum number of candidates to return
+	 * @return List<Result> 	New list of at most maxResults candidates, most
+	 *         					likely first
+	 */
+	public List<Result> getCandidates(int countryId, int maxResults) {
+		if (countryId < 0 || countryId > 0xF) {
+			throw new IllegalArgumentException("Country ID must be between 0 and F");
+		}
+		if (maxResults < 1) {
+			throw new IllegalArgumentException("Maximum results must be at least 1");
+		}
+		// Results have public fields, so each caller gets its own copies
+		Result[] candidates = mCandidates[countryId];
+		List<Result> resultList = new ArrayList<Result>(Math.min(candidates.length, maxResults));
+		for (int i = 0; i < candidates.length && i < maxResults; i++) {
+			Result candidate = candidates[i];
+			resultList.add(new Result(candidate.broadcastCountryCode, candidate.ecc,
+					candidate.isoCountryCode));
+		}
+		return resultList;
+	}
+}
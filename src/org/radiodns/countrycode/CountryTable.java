@@ -0,0 +1,661 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class holds the country lookup table used by Resolver, compiled into
+ * array indexes for resolution.
+ * 
+ * A table is built from one or more layers in the format of countries.csv,
+ * typically the bundled table followed by local overrides. Each row of a later
+ * layer is merged into the row with the same ISO Country Code, or added if
+ * there is none: non-empty fields replace the existing value, and a nearby
+ * countries field starting with '+' is appended to the existing list instead.
+ * The layers are merged once when the table is built, so lookups cost the same
+ * however many layers there are.
+ * 
+ * Mobile Country Codes (MCC) are mapped to countries by layers in the format of
+ * mcc.csv, one MCC per row followed by the ISO Country Codes sharing it, e.g.
+ * "234,GB;GG;JE;IM". A later row for the same MCC replaces its countries, or
+ * appends to them if the list starts with '+'.
+ * 
+ * The table records the layer which last defined each country and reports any
+ * conflicts found while merging. Instances are immutable and may be shared
+ * between threads and Resolvers.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class CountryTable {
+
+	/**
+	 * Name of the layer loaded from the bundled countries.csv
+	 */
+	public static final String DEFAULT_LAYER = "countries.csv";
+
+	/**
+	 * Name of the layer loaded from the bundled mcc.csv
+	 */
+	public static final String DEFAULT_MCC_LAYER = "mcc.csv";
+
+	/**
+	 * Number of hops across nearby countries precomputed unless set on the
+	 * Builder
+	 */
+	public static final int DEFAULT_MAX_HOPS = 3;
+
+	private static final String PLACEHOLDER = "XXXX";
+
+	private final Map<String, Country> mCountryLookupTable;
+	private final Map<String, String> mSources;
+	private final Map<String, Map<String, String>> mNearbySources;
+	private final List<String> mConflicts;
+	private final Country[] mGCCIndex = new Country[0x1000];
+	private final Country[][] mCountryIdIndex = new Country[26 * 26 * 16][];
+	private final Country[][] mMccIndex = new Country[1000][];
+	private final CandidateIndex mCandidateIndex;
+	private final ReachabilityIndex mReachabilityIndex;
+
+	/**
+	 * Builds a CountryTable from a stack of layers
+	 */
+	public static class Builder {
+		private final Map<String, Country> mCountries = new LinkedHashMap<String, Country>();
+		private final Map<String, String> mSources = new HashMap<String, String>();
+		private final Map<String, Map<String, String>> mNearbySources = new HashMap<String, Map<String, String>>();
+		private final List<String> mConflicts = new ArrayList<String>();
+		private final Map<Integer, List<String>> mMobileCountryCodes = new HashMap<Integer, List<String>>();
+		private final Map<Integer, String> mMccSources = new HashMap<Integer, String>();
+		private int mMaxHops = DEFAULT_MAX_HOPS;
+		private long mLoadTime = 0;
+
+		/**
+		 * Add the bundled countries.csv and mcc.csv as layers
+		 * 
+		 * @return Builder
+		 * @throws IOException
+		 */
+		public Builder addDefaultLayer() throws IOException {
+			InputStream csv = CountryTable.class.getResourceAsStream(DEFAULT_LAYER);
+			if (csv == null) {
+				throw new IOException("Bundled " + DEFAULT_LAYER + " not found");
+			}
+			addLayer(DEFAULT_LAYER, csv);
+			InputStream mcc = CountryTable.class.getResourceAsStream(DEFAULT_MCC_LAYER);
+			if (mcc == null) {
+				throw new IOException("Bundled " + DEFAULT_MCC_LAYER + " not found");
+			}
+			return addMccLayer(DEFAULT_MCC_LAYER, mcc);
+		}
+
+		/**
+		 * Parse a table in the format of countries.csv and merge it over the
+		 * layers already added. The stream is closed once read.
+		 * 
+		 * @param name 	Name identifying the layer in sources and conflicts
+		 * @param csv 	Table in the format of countries.csv
+		 * @return Builder
+		 * @throws IOException
+		 */
+		public Builder addLayer(String name, InputStream csv) throws IOException {
+			if (name == null || csv == null) {
+				throw new IllegalArgumentException("Layer name and stream must not be null");
+			}
+			long start = System.nanoTime();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(csv));
+			try {
+				String nextLine;
+				while ((nextLine = reader.readLine()) != null) {
+					if (nextLine.trim().length() == 0) {
+						continue;
+					}
+					String[] vals = new String[5];
+					String[] lineParts = nextLine.split(",");
+					System.arraycopy(lineParts, 0, vals, 0, Math.min(lineParts.length, vals.length));
+					if (vals[1] == null || vals[1].length() == 0) {
+						throw new IOException("Missing ISO Country Code in " + name + ": " + nextLine);
+					}
+					merge(name, vals[1].toUpperCase(Locale.ENGLISH), vals[2], vals[3], vals[4]);
+				}
+			} finally {
+				reader.close();
+			}
+			mLoadTime += System.nanoTime() - start;
+			return this;
+		}
+
+		/**
+		 * Parse a table in the format of mcc.csv and merge it over the MCC
+		 * layers already added. The stream is closed once read.
+		 * 
+		 * @param name 	Name identifying the layer in conflicts
+		 * @param csv 	Table in the format of mcc.csv
+		 * @return Builder
+		 * @throws IOException
+		 */
+		public Builder addMccLayer(String name, InputStream csv) throws IOException {
+			if (name == null || csv == null) {
+				throw new IllegalArgumentException("Layer name and stream must not be null");
+			}
+			long start = System.nanoTime();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(csv));
+			try {
+				String nextLine;
+				while ((nextLine = reader.readLine()) != null) {
+					if (nextLine.trim().length() == 0) {
+						continue;
+					}
+					String[] vals = nextLine.split(",");
+					if (vals.length != 2 || !vals[0].matches("^[0-9]{3}$")) {
+						throw new IOException("Invalid MCC row in " + name + ": " + nextLine);
+					}
+					mergeMcc(name, Integer.parseInt(vals[0]), vals[1].toUpperCase(Locale.ENGLISH));
+				}
+			} finally {
+				reader.close();
+			}
+			mLoadTime += System.nanoTime() - start;
+			return this;
+		}
+
+		/**
+		 * Set the largest number of hops across nearby countries which may be
+		 * searched, see Resolver.resolveGCCWithCountryCode(String, String, int)
+		 * 
+		 * @param maxHops 	Number of hops, at least 1
+		 * @return Builder
+		 */
+		public Builder setMaxHops(int maxHops) {
+			if (maxHops < 1) {
+				throw new IllegalArgumentException("Number of hops must be at least 1");
+			}
+			mMaxHops = maxHops;
+			return this;
+		}
+
+		/**
+		 * Compile the merged layers into a CountryTable
+		 * 
+		 * @return CountryTable
+		 */
+		public CountryTable build() {
+			ResolutionListener listener = Resolver.getResolutionListener();
+			long start = listener != null ? System.nanoTime() : 0;
+			CountryTable table = new CountryTable(this);
+			if (listener != null) {
+				listener.onTableLoaded(table.mCountryLookupTable.size(),
+						mLoadTime + System.nanoTime() - start);
+			}
+			return table;
+		}
+
+		private void merge(String layer, String isoCountryCode, String ecc,
+				String countryIds, String nearbyCountries) {
+			Country existing = mCountries.get(isoCountryCode);
+			if (existing == null) {
+				// with nothing to append to, an appended list is the whole list
+				if (nearbyCountries != null && nearbyCountries.startsWith("+")) {
+					nearbyCountries = nearbyCountries.substring(1);
+				}
+				List<String> nearby = csvArrayToList(nearbyCountries);
+				mCountries.put(isoCountryCode, new Country(isoCountryCode,
+						ecc == null ? "" : ecc, csvArrayToList(countryIds), nearby));
+				mSources.put(isoCountryCode, layer);
+				mNearbySources.put(isoCountryCode, nearbySources(layer, nearby));
+				return;
+			}
+
+			String source = mSources.get(isoCountryCode);
+			String mergedEcc = existing.getECC();
+			if (!isEmpty(ecc)) {
+				checkConflict(layer, source, isoCountryCode, "ECC", mergedEcc, ecc);
+				mergedEcc = ecc;
+			}
+			List<String> mergedIds = existing.getCountryIds();
+			if (!isEmpty(countryIds)) {
+				checkConflict(layer, source, isoCountryCode, "Country IDs",
+						join(mergedIds), countryIds);
+				mergedIds = csvArrayToList(countryIds);
+			}
+			List<String> mergedNearby = existing.getNearbyCountries();
+			if (!isEmpty(nearbyCountries)) {
+				if (nearbyCountries.startsWith("+")) {
+					// appended entries are sourced individually, leaving the
+					// source of the rest of the row unchanged
+					mergedNearby = new ArrayList<String>(mergedNearby);
+					Map<String, String> sources = mNearbySources.get(isoCountryCode);
+					for (String nearbyCountry : csvArrayToList(nearbyCountries.substring(1))) {
+						if (!mergedNearby.contains(nearbyCountry)) {
+							mergedNearby.add(nearbyCountry);
+							sources.put(nearbyCountry, layer);
+						}
+					}
+				} else {
+					checkConflict(layer, source, isoCountryCode, "nearby countries",
+							join(mergedNearby), nearbyCountries);
+					mergedNearby = csvArrayToList(nearbyCountries);
+					mNearbySources.put(isoCountryCode, nearbySources(layer, mergedNearby));
+				}
+			}
+			mCountries.put(isoCountryCode, new Country(isoCountryCode, mergedEcc,
+					mergedIds, mergedNearby));
+			if (!isEmpty(ecc) || !isEmpty(countryIds) || isEmpty(nearbyCountries)
+					|| !nearbyCountries.startsWith("+")) {
+				mSources.put(isoCountryCode, layer);
+			}
+		}
+
+		private static Map<String, String> nearbySources(String layer, List<String> nearbyCountries) {
+			Map<String, String> sources = new HashMap<String, String>();
+			for (String nearbyCountry : nearbyCountries) {
+				sources.put(nearbyCountry, layer);
+			}
+			return sources;
+		}
+
+		private void mergeMcc(String layer, int mcc, String isoCountryCodes) {
+			List<String> existing = mMobileCountryCodes.get(mcc);
+			List<String> merged;
+			if (isoCountryCodes.startsWith("+")) {
+				merged = existing == null ? new ArrayList<String>() : new ArrayList<String>(existing);
+				for (String isoCountryCode : csvArrayToList(isoCountryCodes.substring(1))) {
+					if (!merged.contains(isoCountryCode)) {
+						merged.add(isoCountryCode);
+					}
+				}
+			} else {
+				if (existing != null) {
+					checkConflict(layer, mMccSources.get(mcc), "MCC", String.format("%03d", mcc),
+							join(existing), isoCountryCodes);
+				}
+				merged = csvArrayToList(isoCountryCodes);
+			}
+			mMobileCountryCodes.put(mcc, merged);
+			mMccSources.put(mcc, layer);
+		}
+
+		/**
+		 * Record a conflict where a layer replaces a different, non-placeholder
+		 * value
+		 */
+		private void checkConflict(String layer, String source, String key,
+				String field, String oldValue, String newValue) {
+			if (oldValue.length() == 0 || oldValue.equals(newValue)
+					|| oldValue.equals(PLACEHOLDER)) {
+				return;
+			}
+			mConflicts.add(String.format("%s: %s %s '%s' from %s replaced by '%s'",
+					layer, key, field, oldValue, source, newValue));
+		}
+	}
+
+	private CountryTable(Builder builder) {
+		mCountryLookupTable = Collections.unmodifiableMap(
+				new LinkedHashMap<String, Country>(builder.mCountries));
+		mSources = new HashMap<String, String>(builder.mSources);
+		mNearbySources = new HashMap<String, Map<String, String>>();
+		for (Map.Entry<String, Map<String, String>> entry : builder.mNearbySources.entrySet()) {
+			mNearbySources.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
+		}
+		List<String> conflicts = new ArrayList<String>(builder.mConflicts);
+
+		// initialise an array indexed on numeric Country ID and ECC
+		for (Country country : mCountryLookupTable.values()) {
+			for (String countryId : country.getCountryIds()) {
+				int ecc = parseEcc(country.getECC());
+				if (countryId.length() != 1 || ecc < 0) {
+					continue;
+				}
+				int id = Character.digit(countryId.charAt(0), 16);
+				if (id < 0) {
+					continue;
+				}
+				Country previous = mGCCIndex[(id << 8) | ecc];
+				if (previous != null && previous != country) {
+					conflicts.add(String.format("%s%s: GCC claimed by %s (%s) and %s (%s)",
+							countryId, country.getECC(),
+							previous.getISOCountryCode(), mSources.get(previous.getISOCountryCode()),
+							country.getISOCountryCode(), mSources.get(country.getISOCountryCode())));
+				}
+				mGCCIndex[(id << 8) | ecc] = country;
+			}
+		}
+		mConflicts = Collections.unmodifiableList(conflicts);
+
+		compileCountryIdIndex();
+
+		// initialise an array indexed on MCC, ignoring countries not in the table
+		for (Map.Entry<Integer, List<String>> entry : builder.mMobileCountryCodes.entrySet()) {
+			List<Country> countries = new ArrayList<Country>();
+			for (String isoCountryCode : entry.getValue()) {
+				Country country = mCountryLookupTable.get(isoCountryCode);
+				if (country != null) {
+					countries.add(country);
+				}
+			}
+			if (countries.size() > 0) {
+				mMccIndex[entry.getKey()] = countries.toArray(new Country[countries.size()]);
+			}
+		}
+
+		mCandidateIndex = new CandidateIndex.Builder(this).build();
+		mReachabilityIndex = new ReachabilityIndex(mCountryLookupTable.values(), builder.mMaxHops);
+	}
+
+	/**
+	 * Load the bundled countries.csv and mcc.csv
+	 * 
+	 * @return CountryTable
+	 * @throws IOException
+	 */
+	public static CountryTable load() throws IOException {
+		return new Builder().addDefaultLayer().build();
+	}
+
+	/**
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @return Country 			Country, or null if not in the table
+	 */
+	public Country getCountry(String isoCountryCode) {
+		return mCountryLookupTable.get(isoCountryCode);
+	}
+
+	/**
+	 * @return Collection<Country> 	All countries in the table
+	 */
+	public Collection<Country> getCountries() {
+		return mCountryLookupTable.values();
+	}
+
+	/**
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @return String 			Name of the layer which last defined the
+	 *         					country, or null if not in the table. Nearby
+	 *         					countries appended by a later layer do not
+	 *         					change the source of the country.
+	 */
+	public String getSource(String isoCountryCode) {
+		return mSources.get(isoCountryCode);
+	}
+
+	/**
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @param nearbyCountry 	Nearby country entry, e.g. "C:GB"
+	 * @return String 			Name of the layer which added the entry to the
+	 *         					nearby countries, or null if not in the table
+	 */
+	public String getSource(String isoCountryCode, String nearbyCountry) {
+		Map<String, String> sources = mNearbySources.get(isoCountryCode);
+		return sources == null ? null : sources.get(nearbyCountry);
+	}
+
+	/**
+	 * @return List<String> 	Descriptions of values replaced by later layers
+	 *         					and of GCCs claimed by more than one country
+	 */
+	public List<String> getConflicts() {
+		return mConflicts;
+	}
+
+	/**
+	 * @return CandidateIndex 	Candidates for each Country ID from every
+	 *         					country in the table, in table order
+	 */
+	public CandidateIndex getCandidateIndex() {
+		return mCandidateIndex;
+	}
+
+	/**
+	 * @return int 	Largest number of hops across nearby countries which may be
+	 *         		searched
+	 */
+	public int getMaxHops() {
+		return mReachabilityIndex.getMaxHops();
+	}
+
+	/**
+	 * Find the Country for the given numeric Country ID and ECC without
+	 * allocating
+	 * 
+	 * @param countryId 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param ecc 			Extended Country Code (ECC)
+	 * @return Country, or null if no match is found in the lookup table
+	 */
+	Country getCountryForGCC(int countryId, int ecc) {
+		return mGCCIndex[((countryId & 0xF) << 8) | (ecc & 0xFF)];
+	}
+
+	/**
+	 * Find the countries sharing the given Mobile Country Code (MCC) without
+	 * allocating, the primary country first
+	 * 
+	 * @param mcc 			Mobile Country Code (MCC), 0-999
+	 * @return Country[] 	Countries using the MCC, or null if it is not
+	 *         				recognised
+	 */
+	Country[] getCountriesForMcc(int mcc) {
+		if (mcc < 0 || mcc >= mMccIndex.length) {
+			return null;
+		}
+		return mMccIndex[mcc];
+	}
+
+	/**
+	 * Find the countries matching the given numeric Country ID when the device
+	 * is on a network using the given Mobile Country Code (MCC): the union of
+	 * the matches of each country sharing the MCC, the primary country first
+	 * 
+	 * @param mcc 				Mobile Country Code (MCC), 0-999
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return List<Country> 	Matching countries, or null if the MCC is not
+	 *         					recognised
+	 */
+	List<Country> getCountriesForMcc(int mcc, int countryId) {
+		Country[] candidates = getCountriesForMcc(mcc);
+		if (candidates == null) {
+			return null;
+		}
+		List<Country> matches = new ArrayList<Country>();
+		for (Country candidate : candidates) {
+			Country[] candidateMatches = getCountriesForCountryId(
+					isoCountryIndex(candidate.getISOCountryCode()), countryId);
+			if (candidateMatches == null) {
+				continue;
+			}
+			for (Country country : candidateMatches) {
+				if (!matches.contains(country)) {
+					matches.add(country);
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Find the countries matching the given numeric Country ID when the device
+	 * is located in the given country, without allocating. This is the
+	 * reported country if the Country ID is its own, otherwise any adjacent
+	 * countries using the Country ID.
+	 * 
+	 * @param isoCountryIndex 	Index of the ISO Country Code, see isoCountryIndex()
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return Country[] 		Matching countries, or null if the ISO Country Code
+	 *         					is not recognised
+	 */
+	Country[] getCountriesForCountryId(int isoCountryIndex, int countryId) {
+		if (isoCountryIndex < 0 || countryId < 0) {
+			return null;
+		}
+		return mCountryIdIndex[(isoCountryIndex << 4) | (countryId & 0xF)];
+	}
+
+	/**
+	 * Find the countries matching the given numeric Country ID within the
+	 * given number of hops across nearby countries of the reported country,
+	 * nearest first
+	 * 
+	 * @param isoCountryIndex 	Index of the ISO Country Code, see isoCountryIndex()
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param maxHops 			Number of hops to search, 0 to getMaxHops()
+	 * @return List<Country> 	Matching countries, or null if the ISO Country
+	 *         					Code is not recognised
+	 */
+	List<Country> getCountriesWithinHops(int isoCountryIndex, int countryId, int maxHops) {
+		return mReachabilityIndex.getCountries(isoCountryIndex, countryId, maxHops);
+	}
+
+	/**
+	 * Convert an ISO 3166 two-letter country code to an index from 0 to 675
+	 * 
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @return int 				Index, or -1 if not a valid country code
+	 */
+	static int isoCountryIndex(String isoCountryCode) {
+		if (isoCountryCode == null || isoCountryCode.length() != 2
+				|| isoCountryCode.charAt(0) > 0xFF || isoCountryCode.charAt(1) > 0xFF) {
+			return -1;
+		}
+		return isoCountryIndex((isoCountryCode.charAt(0) << 8) | isoCountryCode.charAt(1));
+	}
+
+	/**
+	 * Convert the two ASCII letters of an ISO 3166 country code, packed into
+	 * 16 bits with the first letter high, to an index from 0 to 675, e.g. as
+	 * received by ResolutionGateway
+	 * 
+	 * @param letters 	Letters of the ISO 3166 two-letter country code, in
+	 *            		either case
+	 * @return int 		Index, or -1 if not a valid country code
+	 */
+	static int isoCountryIndex(int letters) {
+		if ((letters & ~0xFFFF) != 0) {
+			return -1;
+		}
+		// setting 0x20 converts ASCII upper case letters to lower case
+		int first = ((letters >>> 8) | 0x20) - 'a';
+		int second = ((letters & 0xFF) | 0x20) - 'a';
+		if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+			return -1;
+		}
+		return first * 26 + second;
+	}
+
+	/**
+	 * Precompute the countries matching each Country ID for every country in
+	 * the lookup table
+	 */
+	private void compileCountryIdIndex() {
+		for (Country reportedCountry : mCountryLookupTable.values()) {
+			int index = isoCountryIndex(reportedCountry.getISOCountryCode());
+			if (index < 0) {
+				continue;
+			}
+			for (int countryId = 0; countryId < 16; countryId++) {
+				String broadcastCountryCode = Integer.toHexString(countryId).toUpperCase(Locale.ENGLISH);
+				List<Country> matches = new ArrayList<Country>();
+				if (compareCountryIds(reportedCountry, broadcastCountryCode)) {
+					matches.add(reportedCountry);
+				} else {
+					for (String nearbyCountry : reportedCountry.getNearbyCountries()) {
+						String[] countryParts = nearbyCountry.split(":");
+						if (countryParts.length != 2) {
+							continue;
+						}
+						Country country = mCountryLookupTable.get(countryParts[1]);
+						if (broadcastCountryCode.equals(countryParts[0]) && country != null) {
+							matches.add(country);
+						}
+					}
+				}
+				mCountryIdIndex[(index << 4) | countryId] = matches.toArray(new Country[matches.size()]);
+			}
+		}
+	}
+
+	/**
+	 * Compare the Country IDs of the given country with the supplied country ID
+	 * 
+	 * @param country 		Country
+	 * @param countryId 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return boolean
+	 */
+	static boolean compareCountryIds(Country country, String countryId) {
+		for (String id : country.getCountryIds()) {
+			if (countryId.equals(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return int 	Numeric value of a two-character ECC, or -1 if not valid
+	 */
+	static int parseEcc(String ecc) {
+		if (ecc == null || ecc.length() != 2) {
+			return -1;
+		}
+		int high = Character.digit(ecc.charAt(0), 16);
+		int low = Character.digit(ecc.charAt(1), 16);
+		return high < 0 || low < 0 ? -1 : (high << 4) | low;
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.length() == 0;
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder result = new StringBuilder();
+		for (String value : values) {
+			if (result.length() > 0) {
+				result.append(';');
+			}
+			result.append(value);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Convert a semi-colon delimited list String into a List
+	 * 
+	 * @param array 	Semi-colon delimited list String
+	 * @return List of values
+	 */
+	private static List<String> csvArrayToList(String array) {
+		List<String> result = new ArrayList<String>();
+		if (array == null || array.equals("")) {
+			// return empty array
+			return result;
+		}
+		String[] parts = array.split(";");
+		Collections.addAll(result, parts);
+		return result;
+	}
+}
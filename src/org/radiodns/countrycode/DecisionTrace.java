@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class records why resolveGCC() returned what it did, for a sample of
+ * resolutions, so that a wrong result reported in the field can be explained
+ * afterwards. A trace is installed with Resolver.setDecisionTrace(); while none
+ * is installed a resolution only tests for it.
+ * 
+ * Decisions are written to a bounded ring buffer without locking, the oldest
+ * being overwritten once it is full, and can be read at any time with
+ * getDecisions(). Instances are thread-safe and may be shared by every
+ * Resolver.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class DecisionTrace {
+
+	private final AtomicReferenceArray<Decision> mDecisions;
+	private final int mMask;
+	private final int mSampleInterval;
+	private final AtomicLong mSequence = new AtomicLong();
+
+	/**
+	 * A single traced resolution
+	 */
+	public static class Decision {
+		/** Position of the decision in the order recorded */
+		public final long sequence;
+		/** Time the resolution completed, in milliseconds */
+		public final long time;
+		/** ISO Country Code used, or null */
+		public final String isoCountryCode;
+		/** Mobile Country Code (MCC) used, or null */
+		public final String mcc;
+		/** Extended Country Code (ECC) used, or null */
+		public final String ecc;
+		/** Country ID (first nibble of RDS PI Code/DAB SId) */
+		public final String broadcastCountryCode;
+		/** Decision taken */
+		public final ResolutionListener.Path path;
+		/**
+		 * Entries of the table considered: the Country IDs of the reported
+		 * country for COUNTRY, its nearby countries as "ID:ISO" for
+		 * NEARBY_COUNTRY, the countries sharing the MCC for MCC and none for
+		 * ECC
+		 */
+		public final List<String> considered;
+		/** Results returned, empty if the resolution failed */
+		public final List<Result> results;
+		/** Message of the ResolutionException thrown, or null */
+		public final String failure;
+		/** Time taken in nanoseconds */
+		public final long duration;
+
+		Decision(long sequence, long time, String isoCountryCode, String mcc, String ecc,
+				String broadcastCountryCode, ResolutionListener.Path path, List<String> considered,
+				List<Result> results, String failure, long duration) {
+			this.sequence = sequence;
+			this.time = time;
+			this.isoCountryCode = isoCountryCode;
+			this.mcc = mcc;
+			this.ecc = ecc;
+			this.broadcastCountryCode = broadcastCountryCode;
+			this.path = path;
+			this.considered = considered;
+			this.results = results;
+			this.failure = failure;
+			this.duration = duration;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			result.append('#').append(sequence).append(' ');
+			if (mcc != null) {
+				result.append("MCC ").append(mcc);
+			} else if (isoCountryCode != null) {
+				result.append("ISO ").append(isoCountryCode);
+			} else {
+				result.append("ECC ").append(ecc);
+			}
+			result.append(" + ").append(broadcastCountryCode).append(": ").append(path);
+			if (!considered.isEmpty()) {
+				result.append(" considered ").append(considered);
+			}
+			result.append(" -> ");
+			if (failure != null) {
+				result.append(failure);
+			} else {
+				for (int i = 0; i < results.size(); i++) {
+					if (i > 0) {
+						result.append(", ");
+					}
+					result.append(results.get(i).gcc).append(' ').append(results.get(i).isoCountryCode);
+				}
+			}
+			return result.toString();
+		}
+	}
+
+	/**
+	 * @param capacity 			Number of decisions kept, rounded up to a power
+	 *            				of two
+	 * @param sampleInterval 	Record one resolution in this many on average,
+	 *            				chosen at random, or 1 to record all of them
+	 */
+	public DecisionTrace(int capacity, int sampleInterval) {
+		if (capacity < 1 || capacity > 1 << 24 || sampleInterval < 1) {
+			throw new IllegalArgumentException(
+					"Capacity must be between 1 and 2^24 and sample interval at least 1");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		mDecisions = new AtomicReferenceArray<Decision>(size);
+		mMask = size - 1;
+		mSampleInterval = sampleInterval;
+	}
+
+	/**
+	 * @return int 	Number of decisions kept
+	 */
+	public int getCapacity() {
+		return mMask + 1;
+	}
+
+	/**
+	 * @return List<Decision> 	The decisions currently held, oldest first
+	 */
+	public List<Decision> getDecisions() {
+		List<Decision> decisions = new ArrayList<Decision>();
+		for (int i = 0; i <= mMask; i++) {
+			Decision decision = mDecisions.get(i);
+			if (decision != null) {
+				decisions.add(decision);
+			}
+		}
+		Collections.sort(decisions, new Comparator<Decision>() {
+			@Override
+			public int compare(Decision lhs, Decision rhs) {
+				return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+			}
+		});
+		return decisions;
+	}
+
+	/**
+	 * Discard the decisions held
+	 */
+	public void clear() {
+		for (int i = 0; i <= mMask; i++) {
+			mDecisions.set(i, null);
+		}
+	}
+
+	/**
+	 * @return boolean 	true if the resolution about to take place should be
+	 *         			recorded
+	 */
+	boolean sample() {
+		// sampled per thread, so that resolutions on different threads share
+		// no counter while a trace is installed
+		int interval = mSampleInterval;
+		return interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0;
+	}
+
+	void record(String isoCountryCode, String mcc, String ecc, String broadcastCountryCode,
+			ResolutionListener.Path path, List<String> considered, List<Result> results,
+			String failure, long duration) {
+		long sequence = mSequence.getAndIncrement();
+		mDecisions.set((int) sequence & mMask, new Decision(sequence, System.currentTimeMillis(),
+				isoCountryCode, mcc, ecc, broadcastCountryCode, path, considered, results, failure,
+				duration));
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * This class decodes the DAB Fast Information Channel (FIC) incrementally,
+ * tracking the ensemble Extended Country Code (ECC) signalled in FIG 0/9 and
+ * the services signalled in FIG 0/2, and resolves the Global Country Code
+ * (GCC) of every service in the ensemble.
+ * 
+ * Fast Information Blocks (FIBs) are consumed from a ByteBuffer. Decoder state
+ * is held in primitive arrays so that no objects are allocated per FIG; a
+ * Result is only created when the GCC of a service changes, at which point the
+ * Listener is notified.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class FicDecoder {
+
+	/**
+	 * Length in bytes of a Fast Information Block, including the CRC
+	 */
+	public static final int FIB_LENGTH = 32;
+
+	private static final int FIB_DATA_LENGTH = 30;
+	private static final int END_MARKER = 0xFF;
+	private static final int UNRESOLVED = -1;
+
+	/**
+	 * Receives the Global Country Code (GCC) of services in the ensemble
+	 */
+	public interface Listener {
+		/**
+		 * Called when the GCC of a service is first resolved or has changed
+		 * 
+		 * @param sId 		DAB SId (16 or 32-bit)
+		 * @param result 	Result containing the GCC of the service
+		 */
+		void onServiceResolved(int sId, Result result);
+	}
+
+	private final Resolver mResolver;
+	private final Listener mListener;
+
+	private boolean mCrcCheck = true;
+	private int mEnsembleEcc = UNRESOLVED;
+
+	// services signalled in FIG 0/2
+	private int mServiceCount = 0;
+	private int[] mServiceIds = new int[16];
+	private boolean[] mServiceLongForm = new boolean[16];
+	private int[] mServiceGCC = new int[16];
+
+	// services signalled with a different ECC in the FIG 0/9 extended field
+	private int mEccOverrideCount = 0;
+	private int[] mEccOverrideIds = new int[4];
+	private int[] mEccOverrides = new int[4];
+
+	public FicDecoder(Resolver resolver, Listener listener) {
+		if (resolver == null || listener == null) {
+			throw new IllegalArgumentException(
+					"Resolver and Listener must not be null");
+		}
+		mResolver = resolver;
+		mListener = listener;
+	}
+
+	/**
+	 * Enable or disable validation of the FIB CRC. Enabled by default; FIBs
+	 * failing the check are discarded.
+	 * 
+	 * @param enabled 	true to validate the CRC of each FIB
+	 */
+	public void setCrcCheckEnabled(boolean enabled) {
+		mCrcCheck = enabled;
+	}
+
+	/**
+	 * Decode all complete FIBs remaining in the buffer. The buffer position is
+	 * advanced past each FIB consumed; any trailing partial FIB is left in the
+	 * buffer for the next call. Fields are read big-endian, as transmitted,
+	 * whatever the byte order of the buffer.
+	 * 
+	 * @param fic 	Buffer containing FIBs
+	 * @return int 	Number of FIBs consumed
+	 */
+	public int decode(ByteBuffer fic) {
+		ByteBuffer fibs = fic.order() == ByteOrder.BIG_ENDIAN ? fic : fic.duplicate().order(
+				ByteOrder.BIG_ENDIAN);
+		int count = 0;
+		while (fic.remaining() >= FIB_LENGTH) {
+			int offset = fic.position();
+			if (!mCrcCheck || checkCrc(fibs, offset)) {
+				decodeFib(fibs, offset);
+			}
+			fic.position(offset + FIB_LENGTH);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return int 	Ensemble Extended Country Code (ECC), or -1 if FIG 0/9 has
+	 *         not yet been received
+	 */
+	public int getEnsembleEcc() {
+		return mEnsembleEcc;
+	}
+
+	/**
+	 * @return int 	Number of services signalled in the ensemble
+	 */
+	public int getServiceCount() {
+		return mServiceCount;
+	}
+
+	/**
+	 * @param index 	Service index, from 0 to getServiceCount() - 1
+	 * @return int 		DAB SId of the service
+	 */
+	public int getServiceId(int index) {
+		if (index < 0 || index >= mServiceCount) {
+			throw new IndexOutOfBoundsException("Invalid service index");
+		}
+		return mServiceIds[index];
+	}
+
+	/**
+	 * Forget the ensemble ECC and all services, e.g. after retuning
+	 */
+	public void reset() {
+		mEnsembleEcc = UNRESOLVED;
+		mServiceCount = 0;
+		mEccOverrideCount = 0;
+	}
+
+	/**
+	 * Walk the FIGs contained in the data field of a single FIB
+	 */
+	private void decodeFib(ByteBuffer fic, int offset) {
+		int pos = offset;
+		int end = offset + FIB_DATA_LENGTH;
+		while (pos < end) {
+			int header = fic.get(pos) & 0xFF;
+			if (header == END_MARKER) {
+				break;
+			}
+			int type = header >> 5;
+			int length = header & 0x1F;
+			if (pos + 1 + length > end) {
+				// malformed FIG, discard the remainder of the FIB
+				break;
+			}
+			if (type == 0 && length > 0) {
+				decodeType0(fic, pos + 1, length);
+			}
+			pos += 1 + length;
+		}
+	}
+
+	private void decodeType0(ByteBuffer fic, int pos, int length) {
+		int header = fic.get(pos) & 0xFF;
+		boolean otherEnsemble = (header & 0x40) != 0;
+		boolean longForm = (header & 0x20) != 0;
+		int extension = header & 0x1F;
+		int end = pos + length;
+
+		if (extension == 2 && !otherEnsemble) {
+			decodeServices(fic, pos + 1, end, longForm);
+		} else if (extension == 9 && !otherEnsemble) {
+			decodeCountry(fic, pos + 1, end);
+		}
+	}
+
+	/**
+	 * FIG 0/2 - Basic service and service component definition
+	 */
+	private void decodeServices(ByteBuffer fic, int pos, int end, boolean longForm) {
+		int sIdLength = longForm ? 4 : 2;
+		while (pos + sIdLength + 1 <= end) {
+			int sId = longForm ? fic.getInt(pos) : fic.getShort(pos) & 0xFFFF;
+			pos += sIdLength;
+			int components = fic.get(pos) & 0x0F;
+			pos += 1 + components * 2;
+			if (pos > end) {
+				break;
+			}
+			addService(sId, longForm);
+		}
+	}
+
+	/**
+	 * FIG 0/9 - Country, LTO and International table
+	 */
+	private void decodeCountry(ByteBuffer fic, int pos, int end) {
+		if (pos + 3 > end) {
+			return;
+		}
+		boolean extended = (fic.get(pos) & 0x80) != 0;
+		int ecc = fic.get(pos + 1) & 0xFF;
+		pos += 3;
+
+		boolean changed = false;
+		if (extended) {
+			// services carrying an ECC differing from the ensemble ECC
+			while (pos + 2 <= end) {
+				int services = (fic.get(pos) & 0xFF) >> 6;
+				int serviceEcc = fic.get(pos + 1) & 0xFF;
+				pos += 2;
+				for (int i = 0; i < services && pos + 2 <= end; i++) {
+					changed |= setEccOverride(fic.getShort(pos) & 0xFFFF, serviceEcc);
+					pos += 2;
+				}
+			}
+		}
+		if (ecc != mEnsembleEcc) {
+			mEnsembleEcc = ecc;
+			changed = true;
+		}
+		if (changed) {
+			// resolve every service in the ensemble in a single pass
+			for (int i = 0; i < mServiceCount; i++) {
+				resolveService(i);
+			}
+		}
+	}
+
+	private void addService(int sId, boolean longForm) {
+		for (int i = 0; i < mServiceCount; i++) {
+			if (mServiceIds[i] == sId && mServiceLongForm[i] == longForm) {
+				return;
+			}
+		}
+		if (mServiceCount == mServiceIds.length) {
+			int capacity = mServiceCount * 2;
+			mServiceIds = copyOf(mServiceIds, capacity);
+			mServiceGCC = copyOf(mServiceGCC, capacity);
+			boolean[] longForms = new boolean[capacity];
+			System.arraycopy(mServiceLongForm, 0, longForms, 0, mServiceCount);
+			mServiceLongForm = longForms;
+		}
+		int index = mServiceCount++;
+		mServiceIds[index] = sId;
+		mServiceLongForm[index] = longForm;
+		mServiceGCC[index] = UNRESOLVED;
+		resolveService(index);
+	}
+
+	private boolean setEccOverride(int sId, int ecc) {
+		for (int i = 0; i < mEccOverrideCount; i++) {
+			if (mEccOverrideIds[i] == sId) {
+				if (mEccOverrides[i] == ecc) {
+					return false;
+				}
+				mEccOverrides[i] = ecc;
+				return true;
+			}
+		}
+		if (mEccOverrideCount == mEccOverrideIds.length) {
+			mEccOverrideIds = copyOf(mEccOverrideIds, mEccOverrideCount * 2);
+			mEccOverrides = copyOf(mEccOverrides, mEccOverrideCount * 2);
+		}
+		mEccOverrideIds[mEccOverrideCount] = sId;
+		mEccOverrides[mEccOverrideCount] = ecc;
+		mEccOverrideCount++;
+		return true;
+	}
+
+	private int getEcc(int index) {
+		int sId = mServiceIds[index];
+		if (mServiceLongForm[index]) {
+			// 32-bit SIds carry their own ECC
+			return sId >>> 24;
+		}
+		for (int i = 0; i < mEccOverrideCount; i++) {
+			if (mEccOverrideIds[i] == sId) {
+				return mEccOverrides[i];
+			}
+		}
+		return mEnsembleEcc;
+	}
+
+	/**
+	 * Resolve the GCC of a service, notifying the Listener if it has changed
+	 */
+	private void resolveService(int index) {
+		int sId = mServiceIds[index];
+		int countryId = mServiceLongForm[index] ? (sId >>> 20) & 0xF : (sId >>> 12) & 0xF;
+		int ecc = getEcc(index);
+
+		Country country = null;
+		if (ecc != UNRESOLVED) {
+			country = mResolver.getCountryForGCC(countryId, ecc);
+		}
+		int gcc = country != null ? (countryId << 8) | ecc : UNRESOLVED;
+		if (gcc == mServiceGCC[index]) {
+			return;
+		}
+		mServiceGCC[index] = gcc;
+		if (country != null) {
+			mListener.onServiceResolved(sId, new Result(
+					Integer.toHexString(countryId).toUpperCase(Locale.ENGLISH),
+					country.getECC(), country.getISOCountryCode()));
+		}
+	}
+
+	/**
+	 * Check the CRC-16 (ITU-T X.25) transmitted in the last two bytes of a FIB
+	 */
+	private static boolean checkCrc(ByteBuffer fic, int offset) {
+		int crc = 0xFFFF;
+		for (int i = offset; i < offset + FIB_DATA_LENGTH; i++) {
+			crc ^= (fic.get(i) & 0xFF) << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+		}
+		crc = ~crc & 0xFFFF;
+		return crc == (fic.getShort(offset + FIB_DATA_LENGTH) & 0xFFFF);
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class maps IPv4 and IPv6 addresses to ISO Country Codes using a locally
+ * supplied prefix database, for clients which provide neither a location nor
+ * an ISO Country Code.
+ * 
+ * The database is a CSV file of prefixes in CIDR notation and ISO Country
+ * Codes, e.g. "81.2.69.0/24,GB" or "2a02:c7f::/32,GB", where the most specific
+ * prefix matching an address wins. It is compiled once into a binary radix
+ * trie which is memory-mapped by open(). Internal nodes occupy 8 bytes, leaves
+ * are stored in their parent node and identical sibling leaves are merged, so
+ * lookups walk at most one node per address bit and do not allocate. Instances
+ * are thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class IpPrefixTable {
+
+	private static final int MAGIC = 0x49504354; // "IPCT"
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 20;
+
+	private static final int LEAF = 0x80000000;
+	private static final int NO_COUNTRY = 0x3FF;
+
+	private static final String[] ISO_COUNTRY_CODES = new String[26 * 26];
+	static {
+		for (int i = 0; i < ISO_COUNTRY_CODES.length; i++) {
+			ISO_COUNTRY_CODES[i] = new String(new char[] { (char) ('A' + i / 26), (char) ('A' + i % 26) });
+		}
+	}
+
+	private final ByteBuffer mTrie;
+	private final int mIpv4Root;
+	private final int mIpv6Root;
+
+	private IpPrefixTable(ByteBuffer trie) throws IOException {
+		if (trie.capacity() < HEADER_LENGTH || trie.getInt(0) != MAGIC) {
+			throw new IOException("Not a compiled IP prefix table");
+		}
+		if (trie.getInt(4) != VERSION) {
+			throw new IOException("Unsupported IP prefix table version " + trie.getInt(4));
+		}
+		int nodes = trie.getInt(16);
+		if (trie.capacity() < HEADER_LENGTH + (long) nodes * 8) {
+			throw new IOException("Truncated IP prefix table");
+		}
+		mTrie = trie;
+		mIpv4Root = trie.getInt(8);
+		mIpv6Root = trie.getInt(12);
+	}
+
+	/**
+	 * Memory-map a table produced by compile()
+	 * 
+	 * @param file 	Compiled table
+	 * @return IpPrefixTable
+	 * @throws IOException
+	 */
+	public static IpPrefixTable open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new IpPrefixTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			// the mapping remains valid once the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Compile a CSV prefix database into the binary table read by open()
+	 * 
+	 * @param csv 		Prefix database, one "prefix/length,ISO" entry per line
+	 * @param output 	File to write the compiled table to
+	 * @throws IOException
+	 */
+	public static void compile(InputStream csv, File output) throws IOException {
+		TrieBuilder ipv4 = new TrieBuilder();
+		TrieBuilder ipv6 = new TrieBuilder();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(csv));
+		try {
+			String nextLine;
+			int lineNumber = 0;
+			while ((nextLine = reader.readLine()) != null) {
+				lineNumber++;
+				nextLine = nextLine.trim();
+				if (nextLine.length() == 0 || nextLine.startsWith("#")) {
+					continue;
+				}
+				String[] vals = nextLine.split(",");
+				int slash = vals[0].indexOf('/');
+				int country = vals.length > 1 ? CountryTable.isoCountryIndex(vals[1].trim()) : -1;
+				if (slash < 0 || country < 0) {
+					throw new IOException("Invalid prefix entry on line " + lineNumber + ": " + nextLine);
+				}
+				byte[] prefix = parseAddress(vals[0].substring(0, slash).trim(), lineNumber);
+				int length;
+				try {
+					length = Integer.parseInt(vals[0].substring(slash + 1).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid prefix length on line " + lineNumber, e);
+				}
+				if (length < 0 || length > prefix.length * 8) {
+					throw new IOException("Invalid prefix length on line " + lineNumber);
+				}
+				(prefix.length == 4 ? ipv4 : ipv6).insert(prefix, length, country);
+			}
+		} finally {
+			reader.close();
+		}
+
+		// serialise both tries into a single node array
+		IntArray nodes = new IntArray();
+		int ipv4Root = ipv4.serialise(nodes);
+		int ipv6Root = ipv6.serialise(nodes);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ipv4Root);
+			out.writeInt(ipv6Root);
+			out.writeInt(nodes.size() / 2);
+			for (int i = 0; i < nodes.size(); i++) {
+				out.writeInt(nodes.get(i));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Find the ISO Country Code for an IPv4 address, without allocating
+	 * 
+	 * @param address 	IPv4 address as a 32-bit integer
+	 * @return String 	ISO Country Code, or null if no prefix matches
+	 */
+	public String lookup(int address) {
+		int word = mIpv4Root;
+		for (int bit = 31; word >= 0; bit--) {
+			word = mTrie.getInt(HEADER_LENGTH + word * 8 + ((address >>> bit) & 1) * 4);
+		}
+		return countryCode(word);
+	}
+
+	/**
+	 * Find the ISO Country Code for an IPv4 or IPv6 address, without
+	 * allocating. IPv4-mapped IPv6 addresses are looked up as IPv4.
+	 * 
+	 * @param address 	4 or 16-byte address in network byte order
+	 * @return String 	ISO Country Code, or null if no prefix matches
+	 */
+	public String lookup(byte[] address) {
+		if (address == null || (address.length != 4 && address.length != 16)) {
+			throw new IllegalArgumentException("Address must be 4 or 16 bytes");
+		}
+		if (address.length == 4) {
+			return lookup(getInt(address, 0));
+		}
+		if (isIpv4Mapped(address)) {
+			return lookup(getInt(address, 12));
+		}
+		int word = mIpv6Root;
+		for (int bit = 0; word >= 0; bit++) {
+			int value = (address[bit >> 3] >> (7 - (bit & 7))) & 1;
+			word = mTrie.getInt(HEADER_LENGTH + word * 8 + value * 4);
+		}
+		return countryCode(word);
+	}
+
+	/**
+	 * Find the ISO Country Code for an address
+	 * 
+	 * @param address 	IPv4 or IPv6 address
+	 * @return String 	ISO Country Code, or null if no prefix matches
+	 */
+	public String lookup(InetAddress address) {
+		return lookup(address.getAddress());
+	}
+
+	private static String countryCode(int leaf) {
+		int country = leaf & NO_COUNTRY;
+		return country == NO_COUNTRY ? null : ISO_COUNTRY_CODES[country];
+	}
+
+	private static boolean isIpv4Mapped(byte[] address) {
+		for (int i = 0; i < 10; i++) {
+			if (address[i] != 0) {
+				return false;
+			}
+		}
+		return address[10] == (byte) 0xFF && address[11] == (byte) 0xFF;
+	}
+
+	private static int getInt(byte[] address, int offset) {
+		return ((address[offset] & 0xFF) << 24) | ((address[offset + 1] & 0xFF) << 16)
+				| ((address[offset + 2] & 0xFF) << 8) | (address[offset + 3] & 0xFF);
+	}
+
+	private static byte[] parseAddress(String literal, int lineNumber) throws IOException {
+		// literals are parsed here rather than by InetAddress.getByName(), which
+		// looks up anything it does not recognise, e.g. "cafe.face", in DNS
+		byte[] address = literal.indexOf(':') >= 0 ? parseIpv6(literal) : parseIpv4(literal, 0);
+		if (address == null) {
+			throw new IOException("Invalid address on line " + lineNumber + ": " + literal);
+		}
+		try {
+			// converts IPv4-mapped IPv6 addresses to IPv4
+			return InetAddress.getByAddress(address).getAddress();
+		} catch (IOException e) {
+			throw new IOException("Invalid address on line " + lineNumber + ": " + literal, e);
+		}
+	}
+
+	/**
+	 * Parse a dotted-quad IPv4 address from the given index of a string
+	 * 
+	 * @return byte[] 	4-byte address, or null if not a valid address
+	 */
+	private static byte[] parseIpv4(String literal, int start) {
+		byte[] address = new byte[4];
+		int pos = start;
+		for (int i = 0; i < 4; i++) {
+			int end = pos;
+			while (end < literal.length() && end - pos < 4 && literal.charAt(end) >= '0'
+					&& literal.charAt(end) <= '9') {
+				end++;
+			}
+			if (end == pos || end - pos > 3) {
+				return null;
+			}
+			int value = Integer.parseInt(literal.substring(pos, end));
+			if (value > 255) {
+				return null;
+			}
+			address[i] = (byte) value;
+			if (i < 3) {
+				if (end == literal.length() || literal.charAt(end) != '.') {
+					return null;
+				}
+				end++;
+			}
+			pos = end;
+		}
+		return pos == literal.length() ? address : null;
+	}
+
+	/**
+	 * Parse a colon-separated hexadecimal IPv6 address, allowing a single "::"
+	 * and a trailing dotted-quad IPv4 address
+	 * 
+	 * @return byte[] 	16-byte address, or null if not a valid address
+	 */
+	private static byte[] parseIpv6(String literal) {
+		byte[] address = new byte[16];
+		int length = 0;
+		int gap = -1;
+		int pos = 0;
+		if (literal.startsWith("::")) {
+			gap = 0;
+			pos = 2;
+		}
+		while (pos < literal.length()) {
+			int end = pos;
+			while (end < literal.length() && literal.charAt(end) != ':' && literal.charAt(end) != '.') {
+				end++;
+			}
+			if (end < literal.length() && literal.charAt(end) == '.') {
+				// the last 32 bits as an IPv4 address
+				byte[] ipv4 = length <= 12 ? parseIpv4(literal, pos) : null;
+				if (ipv4 == null) {
+					return null;
+				}
+				System.arraycopy(ipv4, 0, address, length, 4);
+				length += 4;
+				pos = literal.length();
+				break;
+			}
+			int group = end - pos > 4 || length == 16 ? -1 : Primitives.parseHex(literal, pos, end);
+			if (end == pos || group < 0) {
+				return null;
+			}
+			address[length++] = (byte) (group >> 8);
+			address[length++] = (byte) group;
+			pos = end;
+			if (pos < literal.length()) {
+				// a separator must be followed by a group, or be a single "::"
+				pos++;
+				if (pos < literal.length() && literal.charAt(pos) == ':') {
+					if (gap >= 0) {
+						return null;
+					}
+					gap = length;
+					pos++;
+				} else if (pos == literal.length()) {
+					return null;
+				}
+			}
+		}
+		if (gap < 0) {
+			return length == 16 ? address : null;
+		}
+		if (length == 16) {
+			return null;
+		}
+		// move the groups after the "::" to the end
+		int tail = length - gap;
+		System.arraycopy(address, gap, address, 16 - tail, tail);
+		for (int i = gap; i < 16 - tail; i++) {
+			address[i] = 0;
+		}
+		return address;
+	}
+
+	/**
+	 * A growable int array
+	 */
+	private static class IntArray {
+		private int[] mValues = new int[64];
+		private int mSize = 0;
+
+		int add(int value) {
+			if (mSize == mValues.length) {
+				int[] values = new int[mSize * 2];
+				System.arraycopy(mValues, 0, values, 0, mSize);
+				mValues = values;
+			}
+			mValues[mSize] = value;
+			return mSize++;
+		}
+
+		int get(int index) {
+			return mValues[index];
+		}
+
+		void set(int index, int value) {
+			mValues[index] = value;
+		}
+
+		int size() {
+			return mSize;
+		}
+	}
+
+	/**
+	 * An uncompressed binary trie of prefixes built before serialisation
+	 */
+	private static class TrieBuilder {
+		// per node: child 0, child 1, country (NO_COUNTRY if none)
+		private final IntArray mNodes = new IntArray();
+
+		TrieBuilder() {
+			addNode();
+		}
+
+		private int addNode() {
+			int node = mNodes.add(0);
+			mNodes.add(0);
+			mNodes.add(NO_COUNTRY);
+			return node / 3;
+		}
+
+		void insert(byte[] prefix, int length, int country) {
+			int node = 0;
+			for (int bit = 0; bit < length; bit++) {
+				int value = (prefix[bit >> 3] >> (7 - (bit & 7))) & 1;
+				int child = mNodes.get(node * 3 + value);
+				if (child == 0) {
+					child = addNode();
+					mNodes.set(node * 3 + value, child);
+				}
+				node = child;
+			}
+			mNodes.set(node * 3 + 2, country);
+		}
+
+		/**
+		 * Write the trie into the output node array, pushing countries down to
+		 * the leaves and merging identical sibling leaves
+		 * 
+		 * @return int 	Word referencing the root, either a node index or a leaf
+		 */
+		int serialise(IntArray output) {
+			return serialise(0, NO_COUNTRY, output);
+		}
+
+		private int serialise(int node, int inherited, IntArray output) {
+			int country = mNodes.get(node * 3 + 2);
+			if (country == NO_COUNTRY) {
+				country = inherited;
+			}
+			int zero = mNodes.get(node * 3);
+			int one = mNodes.get(node * 3 + 1);
+			if (zero == 0 && one == 0) {
+				return LEAF | country;
+			}
+
+			// reserve this node before its children so the root comes first
+			int index = output.add(0) / 2;
+			output.add(0);
+			int zeroWord = zero == 0 ? LEAF | country : serialise(zero, country, output);
+			int oneWord = one == 0 ? LEAF | country : serialise(one, country, output);
+			if (zeroWord == oneWord && zeroWord < 0 && output.size() == (index + 1) * 2) {
+				// both halves resolve to the same country, discard the node
+				output.mSize -= 2;
+				return zeroWord;
+			}
+			output.set(index * 2, zeroWord);
+			output.set(index * 2 + 1, oneWord);
+			return index;
+		}
+	}
+}
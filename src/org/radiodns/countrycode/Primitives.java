@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+/**
+ * Helpers shared by the primitive-array tables, such as SessionStore and
+ * StationIndex, for parsing identifiers and hashing packed keys without
+ * allocating.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+final class Primitives {
+
+	private Primitives() {
+	}
+
+	/**
+	 * Parse the hexadecimal characters from start to end of a string without
+	 * allocating
+	 * 
+	 * @return int 	Value, or -1 if not a valid hexadecimal string
+	 */
+	static int parseHex(String value, int start, int end) {
+		if (value == null || value.length() < end) {
+			return -1;
+		}
+		int result = 0;
+		for (int i = start; i < end; i++) {
+			int digit = Character.digit(value.charAt(i), 16);
+			if (digit < 0) {
+				return -1;
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	/**
+	 * Mix the bits of a packed key (the 64-bit finaliser of MurmurHash3), so
+	 * that keys differing only in a few bits spread across an open-addressing
+	 * table
+	 */
+	static long hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class holds, for every country in a CountryTable, the countries
+ * reachable in each number of hops across the nearby countries of the table,
+ * so that resolution can reach beyond the adjacent countries, e.g. for
+ * reception at sea, from mountain-top transmitters or across small states.
+ * 
+ * The countries at each hop distance and the countries using each Country ID
+ * are compiled into bitsets when the table is built, so widening the search
+ * only intersects more bitsets: no graph is traversed per lookup. Instances
+ * are immutable and thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+final class ReachabilityIndex {
+
+	private final Country[] mCountries;
+	private final int[] mOrdinals = new int[26 * 26];
+	private final int mWords;
+	private final int mMaxHops;
+	// countries exactly each number of hops from each country, one bitset of
+	// mWords longs per hop, in order of distance
+	private final long[][] mRings;
+	private final long[][] mCountryIdSets = new long[16][];
+
+	/**
+	 * @param countries 	Countries of the table, in table order
+	 * @param maxHops 		Largest number of hops to precompute
+	 */
+	ReachabilityIndex(Collection<Country> countries, int maxHops) {
+		mCountries = countries.toArray(new Country[countries.size()]);
+		mWords = (mCountries.length + 63) >>> 6;
+		mMaxHops = maxHops;
+		// no country is further away than there are countries
+		int storedHops = Math.min(maxHops, mCountries.length);
+
+		Arrays.fill(mOrdinals, -1);
+		for (int i = 0; i < mCountries.length; i++) {
+			int index = CountryTable.isoCountryIndex(mCountries[i].getISOCountryCode());
+			if (index >= 0) {
+				mOrdinals[index] = i;
+			}
+		}
+
+		// a country uses a Country ID if its own row lists it, or if a nearby
+		// countries entry of another country pairs it with the Country ID, as
+		// for adjacent countries in the Country ID index
+		for (int countryId = 0; countryId < 16; countryId++) {
+			mCountryIdSets[countryId] = new long[mWords];
+		}
+		for (int i = 0; i < mCountries.length; i++) {
+			for (String countryId : mCountries[i].getCountryIds()) {
+				addCountryId(i, countryId);
+			}
+			for (String nearbyCountry : mCountries[i].getNearbyCountries()) {
+				String[] countryParts = nearbyCountry.split(":");
+				int index = countryParts.length == 2 ? CountryTable.isoCountryIndex(countryParts[1]) : -1;
+				if (index >= 0 && mOrdinals[index] >= 0) {
+					addCountryId(mOrdinals[index], countryParts[0]);
+				}
+			}
+		}
+
+		int[][] nearby = compileNearbyCountries();
+		mRings = new long[mCountries.length][];
+		int[] distances = new int[mCountries.length];
+		int[] queue = new int[mCountries.length];
+		for (int origin = 0; origin < mCountries.length; origin++) {
+			long[] rings = new long[(storedHops + 1) * mWords];
+			Arrays.fill(distances, -1);
+			distances[origin] = 0;
+			queue[0] = origin;
+			int head = 0;
+			int tail = 1;
+			// breadth-first, so each country is reached by its shortest path
+			while (head < tail) {
+				int country = queue[head++];
+				int hops = distances[country];
+				rings[hops * mWords + (country >>> 6)] |= 1L << country;
+				if (hops == storedHops) {
+					continue;
+				}
+				for (int next : nearby[country]) {
+					if (distances[next] < 0) {
+						distances[next] = hops + 1;
+						queue[tail++] = next;
+					}
+				}
+			}
+			mRings[origin] = rings;
+		}
+	}
+
+	/**
+	 * @return int 	Largest number of hops which may be looked up
+	 */
+	int getMaxHops() {
+		return mMaxHops;
+	}
+
+	/**
+	 * Find the countries using the given numeric Country ID within the given
+	 * number of hops of the reported country, nearest first and in table order
+	 * at each distance
+	 * 
+	 * @param isoCountryIndex 	Index of the ISO Country Code, see isoCountryIndex()
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param maxHops 			Number of hops to search, 0 to getMaxHops()
+	 * @return List<Country> 	Matching countries, or null if the ISO Country
+	 *         					Code is not recognised
+	 */
+	List<Country> getCountries(int isoCountryIndex, int countryId, int maxHops) {
+		if (maxHops < 0 || maxHops > mMaxHops) {
+			throw new IllegalArgumentException("Number of hops must be from 0 to " + mMaxHops);
+		}
+		int ordinal = isoCountryIndex < 0 || isoCountryIndex >= mOrdinals.length ? -1
+				: mOrdinals[isoCountryIndex];
+		if (ordinal < 0) {
+			return null;
+		}
+		long[] rings = mRings[ordinal];
+		long[] countryIdSet = mCountryIdSets[countryId & 0xF];
+		int hops = Math.min(maxHops, rings.length / mWords - 1);
+		List<Country> matches = new ArrayList<Country>();
+		for (int hop = 0; hop <= hops; hop++) {
+			for (int word = 0; word < mWords; word++) {
+				long bits = rings[hop * mWords + word] & countryIdSet[word];
+				while (bits != 0) {
+					matches.add(mCountries[(word << 6) | Long.numberOfTrailingZeros(bits)]);
+					bits &= bits - 1;
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Record that the country with the given ordinal uses a Country ID,
+	 * ignoring countries without a valid ECC
+	 */
+	private void addCountryId(int ordinal, String countryId) {
+		int id = countryId.length() == 1 ? Character.digit(countryId.charAt(0), 16) : -1;
+		if (id >= 0 && CountryTable.parseEcc(mCountries[ordinal].getECC()) >= 0) {
+			mCountryIdSets[id][ordinal >>> 6] |= 1L << ordinal;
+		}
+	}
+
+	/**
+	 * Convert the nearby countries of each country to the ordinals of those
+	 * in the table, ignoring duplicates and the country itself
+	 */
+	private int[][] compileNearbyCountries() {
+		int[][] nearby = new int[mCountries.length][];
+		for (int i = 0; i < mCountries.length; i++) {
+			List<Integer> ordinals = new ArrayList<Integer>();
+			for (String nearbyCountry : mCountries[i].getNearbyCountries()) {
+				String[] countryParts = nearbyCountry.split(":");
+				if (countryParts.length != 2) {
+					continue;
+				}
+				int index = CountryTable.isoCountryIndex(countryParts[1]);
+				int ordinal = index < 0 ? -1 : mOrdinals[index];
+				if (ordinal >= 0 && ordinal != i && !ordinals.contains(ordinal)) {
+					ordinals.add(ordinal);
+				}
+			}
+			nearby[i] = new int[ordinals.size()];
+			for (int j = 0; j < nearby[i].length; j++) {
+				nearby[i][j] = ordinals.get(j);
+			}
+		}
+		return nearby;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * This class answers Global Country Code (GCC) queries from embedded receivers
+ * over UDP, using a compact fixed-size binary protocol. Each datagram carries
+ * a batch of queries and is answered with a single datagram of results. All
+ * values are big-endian.
+ * 
+ * Request: a 4-byte header followed by 1 to MAX_QUERIES 8-byte queries
+ * 
+ * <pre>
+ * header	0	VERSION
+ * 			1	number of queries
+ * 			2-3	tag, echoed in the response
+ * query	0	location type, LOCATION_ISO, LOCATION_ECC, LOCATION_MCC or LOCATION_NONE
+ * 			1	reserved, 0
+ * 			2-3	location: the two ASCII letters of the ISO Country Code, the
+ * 				ECC in the low byte, or the MCC as an unsigned integer
+ * 			4-7	RDS PI Code or 16-bit DAB SId in the low 16 bits, or a 32-bit
+ * 				DAB SId, whose own ECC is used in place of the location
+ * </pre>
+ * 
+ * Response: the request header followed by one 2-byte answer per query, in
+ * order, holding the GCC packed in the form 0xCEE (Country ID, ECC), or
+ * UNRESOLVED_ANSWER. Where more than one country matches, the first is
+ * answered, as with SessionStore.
+ * 
+ * Datagrams which do not follow this layout are dropped without a response.
+ * The gateway serves from a single thread calling run(), with buffers
+ * allocated once, until it is closed. When registered with a TablePublisher,
+ * it answers from each new table as it is published.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ResolutionGateway implements Runnable, Closeable, TableChangeListener {
+
+	/**
+	 * Protocol version, the first byte of every request and response
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Maximum number of queries in a request, keeping requests within a
+	 * single Ethernet frame
+	 */
+	public static final int MAX_QUERIES = 128;
+
+	public static final int HEADER_SIZE = 4;
+	public static final int QUERY_SIZE = 8;
+	public static final int ANSWER_SIZE = 2;
+
+	public static final int LOCATION_NONE = 0;
+	public static final int LOCATION_ISO = 1;
+	public static final int LOCATION_ECC = 2;
+	public static final int LOCATION_MCC = 3;
+
+	/**
+	 * Answered for queries which do not resolve
+	 */
+	public static final int UNRESOLVED_ANSWER = 0xFFFF;
+
+	private final DatagramChannel mChannel;
+	// one byte larger than the largest request, so that longer datagrams,
+	// which receive() truncates, are detected and dropped
+	private final ByteBuffer mRequest = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_QUERIES
+			* QUERY_SIZE + 1);
+	private final ByteBuffer mResponse = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_QUERIES
+			* ANSWER_SIZE);
+	private volatile BatchResolver mBatchResolver;
+
+	// written only by the serving thread
+	private volatile long mRequestCount = 0;
+	private volatile long mQueryCount = 0;
+	private volatile long mDroppedCount = 0;
+
+	/**
+	 * @param resolver 	Resolver whose table answers queries
+	 * @param address 	Local address to listen on, or a port of 0 for any free
+	 *            		port
+	 * @throws IOException
+	 */
+	public ResolutionGateway(Resolver resolver, SocketAddress address) throws IOException {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver must not be null");
+		}
+		mBatchResolver = new BatchResolver(resolver.getCountryTable());
+		mChannel = DatagramChannel.open();
+		try {
+			mChannel.socket().bind(address);
+		} catch (IOException e) {
+			mChannel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return SocketAddress 	Local address the gateway is listening on
+	 */
+	public SocketAddress getLocalAddress() {
+		return mChannel.socket().getLocalSocketAddress();
+	}
+
+	/**
+	 * @return long 	Number of requests answered, including any whose
+	 *         			response could not be sent
+	 */
+	public long getRequestCount() {
+		return mRequestCount;
+	}
+
+	/**
+	 * @return long 	Number of queries answered
+	 */
+	public long getQueryCount() {
+		return mQueryCount;
+	}
+
+	/**
+	 * @return long 	Number of datagrams dropped as malformed or unsendable
+	 */
+	public long getDroppedCount() {
+		return mDroppedCount;
+	}
+
+	/**
+	 * Serve requests on the calling thread until the gateway is closed
+	 */
+	@Override
+	public void run() {
+		ByteBuffer request = mRequest;
+		ByteBuffer response = mResponse;
+		while (mChannel.isOpen()) {
+			try {
+				request.clear();
+				SocketAddress sender = mChannel.receive(request);
+				if (sender == null) {
+					continue;
+				}
+				request.flip();
+				response.clear();
+				if (answer(request, response)) {
+					response.flip();
+					// counted before sending, so the count includes a request
+					// by the time its sender receives the response
+					mRequestCount++;
+					mChannel.send(response, sender);
+				} else {
+					mDroppedCount++;
+				}
+			} catch (IOException e) {
+				// closing the channel interrupts receive(); otherwise the
+				// sender has gone away and the next request is served
+				if (mChannel.isOpen()) {
+					mDroppedCount++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop serving and release the socket
+	 */
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+
+	@Override
+	public void onTableChanged(TableDiff diff) {
+		mBatchResolver = new BatchResolver(diff.getNewTable());
+	}
+
+	/**
+	 * Write the response to a request
+	 * 
+	 * @return boolean 	False if the request is malformed
+	 */
+	private boolean answer(ByteBuffer request, ByteBuffer response) {
+		int length = request.remaining();
+		if (length < HEADER_SIZE || request.get(0) != VERSION) {
+			return false;
+		}
+		int count = request.get(1) & 0xFF;
+		if (count == 0 || count > MAX_QUERIES || length != HEADER_SIZE + count * QUERY_SIZE) {
+			return false;
+		}
+
+		BatchResolver batch = mBatchResolver;
+		response.putInt(request.getInt(0));
+		for (int offset = HEADER_SIZE, end = length; offset < end; offset += QUERY_SIZE) {
+			response.putShort((short) resolve(batch, request.get(offset),
+					request.getShort(offset + 2) & 0xFFFF, request.getInt(offset + 4)));
+		}
+		mQueryCount += count;
+		return true;
+	}
+
+	/**
+	 * Resolve a single query to its answer
+	 */
+	private static int resolve(BatchResolver batch, int type, int location, int serviceId) {
+		int gcc;
+		if ((serviceId & 0xFFFF0000) != 0) {
+			gcc = batch.resolveWithEcc(serviceId >>> 24, serviceId >>> 20);
+		} else if (type == LOCATION_ISO) {
+			gcc = batch.resolveWithCountryCode(CountryTable.isoCountryIndex(location), serviceId >>> 12);
+		} else if (type == LOCATION_ECC) {
+			gcc = batch.resolveWithEcc(location, serviceId >>> 12);
+		} else if (type == LOCATION_MCC) {
+			gcc = batch.resolveWithMcc(location, serviceId >>> 12);
+		} else {
+			gcc = BatchResolver.UNRESOLVED;
+		}
+		return gcc == BatchResolver.UNRESOLVED ? UNRESOLVED_ANSWER : gcc;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+/**
+ * Receives notification of table loading and resolutions performed by every
+ * Resolver, for profiling. A listener is registered with
+ * Resolver.setResolutionListener(); while none is registered the Resolver does
+ * no timing or bookkeeping.
+ * 
+ * Implementations are called on the resolving thread and must be thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public interface ResolutionListener {
+
+	/**
+	 * The decision taken to resolve the Global Country Code (GCC)
+	 */
+	enum Path {
+		/** Resolved from the Extended Country Code (ECC) */
+		ECC,
+		/** The Country ID belongs to the reported ISO country */
+		COUNTRY,
+		/** The Country ID was matched against the nearby countries of the reported ISO country */
+		NEARBY_COUNTRY,
+		/** Resolved from each country sharing the Mobile Country Code (MCC) */
+		MCC
+	}
+
+	/**
+	 * Called when a Resolver has loaded its lookup table
+	 * 
+	 * @param countries 	Number of countries loaded
+	 * @param duration 		Time taken in nanoseconds
+	 */
+	void onTableLoaded(int countries, long duration);
+
+	/**
+	 * Called when resolveGCC() completes, successfully or not
+	 * 
+	 * @param isoCountryCode 		ISO Country Code used, or null if resolved from
+	 *            					an ECC or MCC
+	 * @param mcc 					Mobile Country Code (MCC) used, or null
+	 * @param ecc 					Extended Country Code (ECC) used, or null
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param path 					Decision taken
+	 * @param results 				Number of results, 0 if a ResolutionException
+	 *            					was thrown
+	 * @param duration 				Time taken in nanoseconds
+	 */
+	void onResolved(String isoCountryCode, String mcc, String ecc,
+			String broadcastCountryCode, Path path, int results, long duration);
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * This class exports the complete resolution matrix of a CountryTable, the
+ * answer for every (ISO Country Code, Country ID) and (ECC, Country ID) pair,
+ * so that clients outside the JVM can resolve with a single indexed read
+ * instead of reimplementing the lookup.
+ * 
+ * The binary format (big-endian) is:
+ * 
+ * <pre>
+ * u32 magic "GCCM", u16 version, u16 reserved, u32 digest,
+ * u32 ISO cell count (676 * 16), u32 ECC cell count (256 * 16), u32 extra count
+ * u32 ISO cells[(iso index * 16) + country id]
+ * u32 ECC cells[(ecc * 16) + country id]
+ * extras: u32 ISO cell index, u32 result count, u32 results[count]
+ * </pre>
+ * 
+ * The ISO index of a country code is (first letter - 'A') * 26 + (second
+ * letter - 'A'). Each cell holds the number of results in bits 22-27, the GCC
+ * of the first result in bits 10-21 and the ISO index of its country in bits
+ * 0-9; a cell of 0 has no result. Cells with more than one result are also
+ * listed in full, in the same result encoding, in the extras. The digest is a
+ * CRC-32 of the cells and extras, identifying the table content.
+ * 
+ * The JSON export carries the same answers keyed on ISO Country Code or ECC
+ * and then Country ID, omitting empty cells.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ResolutionMatrix {
+
+	/**
+	 * Version of the binary and JSON formats
+	 */
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x4743434D; // "GCCM"
+	private static final int ISO_CELLS = 26 * 26 * 16;
+	private static final int ECC_CELLS = 256 * 16;
+
+	private final int[] mIsoCells = new int[ISO_CELLS];
+	private final int[] mEccCells = new int[ECC_CELLS];
+	private final int[][] mIsoResults = new int[ISO_CELLS][];
+	private final int mDigest;
+
+	/**
+	 * Compute the resolution matrix of a table
+	 * 
+	 * @param table 	CountryTable
+	 * @throws IllegalArgumentException if a result has no hexadecimal ECC
+	 */
+	public ResolutionMatrix(CountryTable table) {
+		for (int iso = 0; iso < 26 * 26; iso++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				Country[] matches = table.getCountriesForCountryId(iso, countryId);
+				if (matches == null || matches.length == 0) {
+					continue;
+				}
+				int[] results = new int[matches.length];
+				for (int i = 0; i < matches.length; i++) {
+					results[i] = encode(countryId, matches[i]);
+				}
+				int cell = (iso << 4) | countryId;
+				mIsoResults[cell] = results;
+				mIsoCells[cell] = (Math.min(results.length, 0x3F) << 22) | results[0];
+			}
+		}
+		for (int ecc = 0; ecc < 256; ecc++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				Country country = table.getCountryForGCC(countryId, ecc);
+				if (country != null) {
+					mEccCells[(ecc << 4) | countryId] = (1 << 22) | encode(countryId, country);
+				}
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		for (int cell : mIsoCells) {
+			update(crc, cell);
+		}
+		for (int cell : mEccCells) {
+			update(crc, cell);
+		}
+		for (int[] results : mIsoResults) {
+			if (results != null && results.length > 1) {
+				for (int result : results) {
+					update(crc, result);
+				}
+			}
+		}
+		mDigest = (int) crc.getValue();
+	}
+
+	/**
+	 * @return int 	CRC-32 digest identifying the content of the matrix
+	 */
+	public int getDigest() {
+		return mDigest;
+	}
+
+	/**
+	 * Write the matrix in the binary format
+	 * 
+	 * @param output 	OutputStream, which is not closed
+	 * @throws IOException
+	 */
+	public void writeBinary(OutputStream output) throws IOException {
+		List<Integer> extras = new ArrayList<Integer>();
+		for (int cell = 0; cell < ISO_CELLS; cell++) {
+			if (mIsoResults[cell] != null && mIsoResults[cell].length > 1) {
+				extras.add(cell);
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(output);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(0);
+		out.writeInt(mDigest);
+		out.writeInt(ISO_CELLS);
+		out.writeInt(ECC_CELLS);
+		out.writeInt(extras.size());
+		for (int cell : mIsoCells) {
+			out.writeInt(cell);
+		}
+		for (int cell : mEccCells) {
+			out.writeInt(cell);
+		}
+		for (int cell : extras) {
+			out.writeInt(cell);
+			out.writeInt(mIsoResults[cell].length);
+			for (int result : mIsoResults[cell]) {
+				out.writeInt(result);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write the matrix as JSON
+	 * 
+	 * @param writer 	Writer, which is not closed
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		writer.write("{\"format\":\"radiodns-gcc-matrix\",\"version\":" + VERSION);
+		writer.write(String.format(",\"digest\":\"%08x\"", mDigest));
+
+		writer.write(",\"iso\":{");
+		boolean firstCountry = true;
+		for (int iso = 0; iso < 26 * 26; iso++) {
+			boolean firstId = true;
+			for (int countryId = 0; countryId < 16; countryId++) {
+				int[] results = mIsoResults[(iso << 4) | countryId];
+				if (results == null) {
+					continue;
+				}
+				if (firstId) {
+					writer.write((firstCountry ? "" : ",") + "\"" + isoCountryCode(iso) + "\":{");
+					firstCountry = false;
+					firstId = false;
+				} else {
+					writer.write(",");
+				}
+				writer.write("\"" + hex(countryId, 1) + "\":[");
+				for (int i = 0; i < results.length; i++) {
+					writer.write((i == 0 ? "" : ",") + "{\"gcc\":\"" + gcc(results[i])
+							+ "\",\"iso\":\"" + isoCountryCode(results[i] & 0x3FF) + "\"}");
+				}
+				writer.write("]");
+			}
+			if (!firstId) {
+				writer.write("}");
+			}
+		}
+
+		writer.write("},\"ecc\":{");
+		boolean firstEcc = true;
+		for (int ecc = 0; ecc < 256; ecc++) {
+			boolean firstId = true;
+			for (int countryId = 0; countryId < 16; countryId++) {
+				int cell = mEccCells[(ecc << 4) | countryId];
+				if (cell == 0) {
+					continue;
+				}
+				if (firstId) {
+					writer.write((firstEcc ? "" : ",") + "\"" + hex(ecc, 2) + "\":{");
+					firstEcc = false;
+					firstId = false;
+				} else {
+					writer.write(",");
+				}
+				writer.write("\"" + hex(countryId, 1) + "\":\"" + isoCountryCode(cell & 0x3FF) + "\"");
+			}
+			if (!firstId) {
+				writer.write("}");
+			}
+		}
+		writer.write("}}");
+		writer.flush();
+	}
+
+	/**
+	 * Check that a binary matrix gives the same answers as a Resolver
+	 * 
+	 * @param input 		Binary matrix, which is not closed
+	 * @param resolver 		Resolver to compare with
+	 * @return List<String> Descriptions of each mismatch, empty if the matrix
+	 *         				is compatible
+	 * @throws IOException if the input is not a binary matrix of this version
+	 */
+	public static List<String> verify(InputStream input, Resolver resolver) throws IOException {
+		DataInputStream in = new DataInputStream(input);
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a resolution matrix");
+		}
+		int version = in.readUnsignedShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported resolution matrix version " + version);
+		}
+		in.readUnsignedShort();
+		in.readInt();
+		if (in.readInt() != ISO_CELLS || in.readInt() != ECC_CELLS) {
+			throw new IOException("Unexpected resolution matrix dimensions");
+		}
+		int extraCount = in.readInt();
+		int[] isoCells = new int[ISO_CELLS];
+		for (int i = 0; i < ISO_CELLS; i++) {
+			isoCells[i] = in.readInt();
+		}
+		int[] eccCells = new int[ECC_CELLS];
+		for (int i = 0; i < ECC_CELLS; i++) {
+			eccCells[i] = in.readInt();
+		}
+		int[][] extras = new int[ISO_CELLS][];
+		for (int i = 0; i < extraCount; i++) {
+			int cell = in.readInt();
+			int count = in.readInt();
+			if (cell < 0 || cell >= ISO_CELLS || count < 0 || count > 0xFF) {
+				throw new IOException("Invalid resolution matrix extra");
+			}
+			extras[cell] = new int[count];
+			for (int j = 0; j < count; j++) {
+				extras[cell][j] = in.readInt();
+			}
+		}
+
+		List<String> mismatches = new ArrayList<String>();
+		for (int iso = 0; iso < 26 * 26; iso++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				int cell = (iso << 4) | countryId;
+				List<String> expected = new ArrayList<String>();
+				try {
+					for (Result result : resolver.resolveGCCWithCountryCode(isoCountryCode(iso), hex(countryId, 1))) {
+						expected.add(result.gcc + "/" + result.isoCountryCode);
+					}
+				} catch (ResolutionException e) {
+					// no result
+				}
+				List<String> actual = new ArrayList<String>();
+				if (isoCells[cell] != 0) {
+					int[] results = extras[cell] != null ? extras[cell] : new int[] { isoCells[cell] & 0x3FFFFF };
+					for (int result : results) {
+						actual.add(gcc(result) + "/" + isoCountryCode(result & 0x3FF));
+					}
+				}
+				if (!expected.equals(actual)) {
+					mismatches.add(isoCountryCode(iso) + " + " + hex(countryId, 1) + ": expected "
+							+ expected + " but matrix has " + actual);
+				}
+			}
+		}
+		for (int ecc = 0; ecc < 256; ecc++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				String expected = "";
+				try {
+					Result result = resolver.resolveGCCWithECC(hex(ecc, 2), hex(countryId, 1)).get(0);
+					expected = result.gcc + "/" + result.isoCountryCode;
+				} catch (ResolutionException e) {
+					// no result
+				}
+				int cell = eccCells[(ecc << 4) | countryId];
+				String actual = cell == 0 ? "" : gcc(cell) + "/" + isoCountryCode(cell & 0x3FF);
+				if (!expected.equals(actual)) {
+					mismatches.add(hex(ecc, 2) + " + " + hex(countryId, 1) + ": expected '"
+							+ expected + "' but matrix has '" + actual + "'");
+				}
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Encode a result as its GCC in bits 10-21 and ISO index in bits 0-9
+	 */
+	private static int encode(int countryId, Country country) {
+		int ecc = CountryTable.parseEcc(country.getECC());
+		int iso = CountryTable.isoCountryIndex(country.getISOCountryCode());
+		if (ecc < 0 || iso < 0) {
+			throw new IllegalArgumentException("Country " + country.getISOCountryCode()
+					+ " cannot be exported without a hexadecimal ECC");
+		}
+		return (((countryId << 8) | ecc) << 10) | iso;
+	}
+
+	private static String gcc(int result) {
+		return hex((result >>> 10) & 0xFFF, 3).toLowerCase(Locale.ENGLISH);
+	}
+
+	private static String isoCountryCode(int iso) {
+		return new String(new char[] { (char) ('A' + iso / 26), (char) ('A' + iso % 26) });
+	}
+
+	private static String hex(int value, int digits) {
+		return String.format(Locale.ENGLISH, "%0" + digits + "X", value);
+	}
+
+	private static void update(CRC32 crc, int value) {
+		crc.update(value >>> 24);
+		crc.update(value >>> 16);
+		crc.update(value >>> 8);
+		crc.update(value);
+	}
+}
@@ -16,60 +16,100 @@
 
 package org.radiodns.countrycode;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * This class enables the resolution of the Global Country Code (GCC) for a
  * radio service, useful in discovering RadioDNS services.
  * 
+ * The lookup table is loaded by the constructor and never modified afterwards.
+ * The setters and resolveGCC() share per-instance state and must not be used
+ * concurrently; threads sharing a single Resolver should instead call
+ * resolveGCCWithECC(), resolveGCCWithCountryCode() and
+ * resolveGCCWithMobileCountryCode(), which only read the lookup table and are
+ * thread-safe.
+ * 
  * @author Byrion Smith <byrion.smith@thisisglobal.com>
  * @version 1.0
  */
 public class Resolver {
 	
-	private Map<String, Country> mCountryLookupTable = new HashMap<String, Country>();
-	private Map<String, Country> mGCCLookupTable = new HashMap<String, Country>();
+	private static volatile ResolutionListener sListener = null;
+	private static volatile DecisionTrace sDecisionTrace = null;
+
+	private final CountryTable mTable;
 	
 	private String mIsoCountryCode = null;
 	private String mEcc = null;
+	private String mMcc = null;
 	private String mDabSId = null;
 	private String mRdsPi = null;
 
+	/**
+	 * Create a Resolver using the bundled countries.csv lookup table
+	 */
 	public Resolver() {
+		this(loadDefaultTable());
+	}
+
+	/**
+	 * Create a Resolver using the given lookup table, which may be shared with
+	 * other Resolvers
+	 * 
+	 * @param table 	CountryTable
+	 */
+	public Resolver(CountryTable table) {
+		if (table == null) {
+			throw new IllegalArgumentException("CountryTable must not be null");
+		}
+		mTable = table;
+	}
+
+	private static CountryTable loadDefaultTable() {
 		// parse countries csv table
+		CountryTable.Builder builder = new CountryTable.Builder();
 		try {
-			BufferedReader reader = new BufferedReader(new InputStreamReader(
-					this.getClass().getResourceAsStream("countries.csv")));
-
-			String nextLine;
-			while ((nextLine = reader.readLine()) != null) {
-				String[] vals = new String[5];
-				String[] lineParts = nextLine.split(",");
-				System.arraycopy(lineParts, 0, vals, 0, lineParts.length);
-
-				Country country = new Country(vals[1], vals[2],
-						csvArrayToList(vals[3]), csvArrayToList(vals[4]));
-				// initialise a hashmap keyed on ISO Country Code
-				mCountryLookupTable.put(country.getISOCountryCode(), country);
-				// initialise a hashmap keyed on a country's GCCs
-				for (String countryId : country.getCountryIds()) {
-					mGCCLookupTable.put(countryId + country.getECC(), country);
-				}
-			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			builder.addDefaultLayer();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		return builder.build();
+	}
+
+	/**
+	 * @return CountryTable 	Lookup table used by this Resolver
+	 */
+	public CountryTable getCountryTable() {
+		return mTable;
+	}
+
+	/**
+	 * Register a listener notified of table loading and resolutions by every
+	 * Resolver, for profiling
+	 * 
+	 * @param listener 	ResolutionListener, or null to remove the current one
+	 */
+	public static void setResolutionListener(ResolutionListener listener) {
+		sListener = listener;
+	}
+
+	static ResolutionListener getResolutionListener() {
+		return sListener;
+	}
+
+	/**
+	 * Record the decisions taken by a sample of the resolutions of every
+	 * Resolver, replacing any trace previously installed
+	 * 
+	 * @param trace 	DecisionTrace, or null to stop tracing
+	 */
+	public static void setDecisionTrace(DecisionTrace trace) {
+		sDecisionTrace = trace;
 	}
 	
 	/**
@@ -85,9 +125,51 @@ public class Resolver {
 					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
 		}
 		mEcc = null;
+		mMcc = null;
 		mIsoCountryCode = isoCountryCode;
 	}
 
+	/**
+	 * Set the Mobile Country Code (MCC) of the cellular network the device is
+	 * registered on, e.g. from the first three digits of
+	 * TelephonyManager.getNetworkOperator(). Where several countries share the
+	 * MCC the results for each of them are combined.
+	 * 
+	 * @param mcc 	Three-digit Mobile Country Code (MCC)
+	 */
+	public void setMobileCountryCode(String mcc) {
+		// input validation
+		if (mcc == null || !mcc.matches("^[0-9]{3}$")) {
+			throw new IllegalArgumentException(
+					"Invalid MCC value. Value must be a three-digit Mobile Country Code (MCC)");
+		}
+		mEcc = null;
+		mIsoCountryCode = null;
+		mMcc = mcc;
+	}
+
+	/**
+	 * Set the ISO Country Code from the IP address of the device, for clients
+	 * which cannot provide their location
+	 * 
+	 * @param address 	IP address of the device
+	 * @param table 	Prefix table mapping IP addresses to ISO Country Codes
+	 * @throws ResolutionException if no prefix in the table matches the address
+	 */
+	public void setIpAddress(InetAddress address, IpPrefixTable table) throws ResolutionException {
+		// input validation
+		if (address == null || table == null) {
+			throw new IllegalArgumentException(
+					"IP address and prefix table must not be null");
+		}
+		String isoCountryCode = table.lookup(address);
+		if (isoCountryCode == null) {
+			throw new ResolutionException(
+					"The supplied IP address is not covered by the prefix table");
+		}
+		setIsoCountryCode(isoCountryCode);
+	}
+
 	/**
 	 * Set the Extended Country Code (ECC) received from broadcast
 	 * 
@@ -101,6 +183,7 @@ public class Resolver {
 		}
 		mEcc = ecc;
 		mIsoCountryCode = null;
+		mMcc = null;
 	}
 	
 	/**
@@ -135,6 +218,7 @@ public class Resolver {
 		if (mDabSId.length() == 8) {
 			mEcc = String.valueOf(mDabSId.charAt(0)) + String.valueOf(mDabSId.charAt(1));
 			mIsoCountryCode = null;
+			mMcc = null;
 		}
 	}
 	
@@ -148,51 +232,198 @@ public class Resolver {
 	 * @throws ResolutionException
 	 */
 	public List<Result> resolveGCC() throws ResolutionException {
-		String broadcastCountryId = null;
-		// select the broadcast country ID from either the RDS PI or DAB SId values
+		String broadcastCountryId = getBroadcastCountryId();
+		
+		if (mIsoCountryCode == null && mEcc == null && mMcc == null) {
+			throw new IllegalStateException(
+					"ISO Country Code, Mobile Country Code (MCC) OR Extended Country Code (ECC) value must be set before attempting to resolve");
+		}
+
+		ResolutionListener listener = sListener;
+		DecisionTrace trace = sDecisionTrace;
+		if (trace != null && !trace.sample()) {
+			trace = null;
+		}
+		if (listener == null && trace == null) {
+			return resolveGCC(broadcastCountryId);
+		}
+
+		// profile or trace the resolution
+		Country reportedCountry = mIsoCountryCode == null ? null
+				: mTable.getCountry(mIsoCountryCode.toUpperCase(Locale.ENGLISH));
+		ResolutionListener.Path path;
+		if (mMcc != null) {
+			path = ResolutionListener.Path.MCC;
+		} else if (mIsoCountryCode == null) {
+			path = ResolutionListener.Path.ECC;
+		} else {
+			path = reportedCountry != null && CountryTable.compareCountryIds(reportedCountry, broadcastCountryId.toUpperCase(Locale.ENGLISH))
+					? ResolutionListener.Path.COUNTRY : ResolutionListener.Path.NEARBY_COUNTRY;
+		}
+		long start = System.nanoTime();
+		List<Result> resultList = null;
+		String failure = null;
+		try {
+			resultList = resolveGCC(broadcastCountryId);
+			return resultList;
+		} catch (ResolutionException e) {
+			failure = e.getMessage();
+			throw e;
+		} finally {
+			long duration = System.nanoTime() - start;
+			if (listener != null) {
+				listener.onResolved(mIsoCountryCode, mMcc, mEcc, broadcastCountryId, path,
+						resultList == null ? 0 : resultList.size(), duration);
+			}
+			if (trace != null) {
+				// copied, as the caller may modify the Results it was returned
+				List<Result> results = new ArrayList<Result>();
+				if (resultList != null) {
+					for (Result result : resultList) {
+						results.add(new Result(result.broadcastCountryCode, result.ecc,
+								result.isoCountryCode));
+					}
+				}
+				results = Collections.unmodifiableList(results);
+				trace.record(mIsoCountryCode, mMcc, mEcc, broadcastCountryId, path,
+						getConsidered(path, reportedCountry), results, failure, duration);
+			}
+		}
+	}
+
+	/**
+	 * List the entries of the table considered by a resolution, for tracing
+	 */
+	private List<String> getConsidered(ResolutionListener.Path path, Country reportedCountry) {
+		List<String> considered = new ArrayList<String>();
+		if (path == ResolutionListener.Path.MCC) {
+			Country[] candidates = mTable.getCountriesForMcc(Integer.parseInt(mMcc));
+			if (candidates != null) {
+				for (Country candidate : candidates) {
+					considered.add(candidate.getISOCountryCode());
+				}
+			}
+		} else if (path == ResolutionListener.Path.COUNTRY) {
+			considered.addAll(reportedCountry.getCountryIds());
+		} else if (path == ResolutionListener.Path.NEARBY_COUNTRY && reportedCountry != null) {
+			considered.addAll(reportedCountry.getNearbyCountries());
+		}
+		return Collections.unmodifiableList(considered);
+	}
+
+	/**
+	 * Resolve the Global Country Code (GCC) as resolveGCC() does and find the
+	 * station broadcasting the RDS PI Code or DAB SId. Where more than one GCC
+	 * is resolved the first with a station in the index is used.
+	 * 
+	 * @param index 		StationIndex to search
+	 * @return Station 		Station matching the inputs
+	 * @throws ResolutionException if no GCC could be resolved or no station
+	 *             			in the index matches
+	 */
+	public Station resolveStation(StationIndex index) throws ResolutionException {
+		if (index == null) {
+			throw new IllegalArgumentException("StationIndex must not be null");
+		}
+		List<Result> resultList = resolveGCC();
+		int serviceId = (int) Long.parseLong(mRdsPi != null ? mRdsPi : mDabSId, 16);
+		for (Result result : resultList) {
+			Station station = index.lookup(Integer.parseInt(result.gcc, 16), serviceId);
+			if (station != null) {
+				return station;
+			}
+		}
+		throw new ResolutionException(
+				"No station matching the given input was found in the station index");
+	}
+
+	/**
+	 * Return the candidate Global Country Codes (GCC) for the RDS PI Code or
+	 * DAB SId when the location of the device is unknown, from the
+	 * precomputed candidates of the lookup table. Any ISO Country Code, MCC or
+	 * ECC set is ignored.
+	 * 
+	 * @param maxResults 		Maximum number of candidates to return
+	 * @return List<Result> 	New list of candidates in table order
+	 * @throws ResolutionException if no country uses the Country ID
+	 */
+	public List<Result> resolveCandidates(int maxResults) throws ResolutionException {
+		return resolveCandidates(mTable.getCandidateIndex(), maxResults);
+	}
+
+	/**
+	 * Return the candidate Global Country Codes (GCC) for the RDS PI Code or
+	 * DAB SId when the location of the device is unknown, narrowed and ordered
+	 * by a CandidateIndex. Any ISO Country Code, MCC or ECC set is ignored.
+	 * 
+	 * @param index 			CandidateIndex built for a region or prior
+	 * @param maxResults 		Maximum number of candidates to return
+	 * @return List<Result> 	New list of candidates, most likely first
+	 * @throws ResolutionException if no candidate uses the Country ID
+	 */
+	public List<Result> resolveCandidates(CandidateIndex index, int maxResults) throws ResolutionException {
+		if (index == null) {
+			throw new IllegalArgumentException("CandidateIndex must not be null");
+		}
+		String broadcastCountryId = getBroadcastCountryId();
+		List<Result> resultList = index.getCandidates(Character.digit(broadcastCountryId.charAt(0), 16), maxResults);
+		if (resultList.size() == 0) {
+			throw new ResolutionException(
+					"A Global Country Code (GCC) could not be resolved for the given input. No match found in lookup table");
+		}
+		return resultList;
+	}
+
+	/**
+	 * Select the broadcast country ID from either the RDS PI or DAB SId values
+	 */
+	private String getBroadcastCountryId() {
 		if (mRdsPi != null) {
-			broadcastCountryId = String.valueOf(mRdsPi.charAt(0));
+			return String.valueOf(mRdsPi.charAt(0));
 		} else if (mDabSId != null && mDabSId.length() == 4) {
-			broadcastCountryId = String.valueOf(mDabSId.charAt(0));
+			return String.valueOf(mDabSId.charAt(0));
 		} else if (mDabSId != null && mDabSId.length() == 8) {
-			broadcastCountryId = String.valueOf(mDabSId.charAt(2));
+			return String.valueOf(mDabSId.charAt(2));
 		} else {
 			throw new IllegalStateException(
 					"RDS Programme Identification (PI) OR Service Identifier (SId) must be set before attempting to resolve");
 		}
-		
+	}
+
+	private List<Result> resolveGCC(String broadcastCountryId) throws ResolutionException {
 		// construct and return a list of results
-		if (mIsoCountryCode != null) {
+		if (mMcc != null) {
+			return resolveGCCWithMobileCountryCode(mMcc, broadcastCountryId);
+		} else if (mIsoCountryCode != null) {
 			return resolveGCCWithCountryCode(mIsoCountryCode, broadcastCountryId);
-		} else if (mEcc != null) {
-			return resolveGCCWithECC(mEcc, broadcastCountryId);
 		} else {
-			throw new IllegalStateException(
-					"ISO Country Code OR Extended Country Code (ECC) value must be set before attempting to resolve");
+			return resolveGCCWithECC(mEcc, broadcastCountryId);
 		}
 	}
 
 	/**
 	 * Find and return the Global Country Code (GCC) for the given Extended
-	 * Country Code (ECC) and Broadcast Country Code
+	 * Country Code (ECC) and Broadcast Country Code. Thread-safe.
 	 * 
 	 * @param ecc 	 				Extended Country Code (ECC)
 	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
 	 * @return Result 				Containing Global Country Code (GCC) of matching country
 	 * @throws ResolutionException
 	 */
-	private List<Result> resolveGCCWithECC(String ecc, String broadcastCountryCode) throws ResolutionException {
+	public List<Result> resolveGCCWithECC(String ecc, String broadcastCountryCode) throws ResolutionException {
 		// input validation
 		if (ecc == null || !ecc.matches("(?i)^[0-9A-F]{2}$")) {
 			throw new IllegalArgumentException(
 					"Invalid ECC value. Value must be a valid hexadecimal Extended Country Code (ECC)");
 		}
+		validateBroadcastCountryCode(broadcastCountryCode);
 		
 		// upper case for hashmap
 		ecc = ecc.toUpperCase(Locale.ENGLISH);
 		broadcastCountryCode = broadcastCountryCode.toUpperCase(Locale.ENGLISH);
 		
-		Country country = mGCCLookupTable.get(broadcastCountryCode + ecc);
+		Country country = mTable.getCountryForGCC(
+				Character.digit(broadcastCountryCode.charAt(0), 16), Integer.parseInt(ecc, 16));
 		if (country == null) {
 			throw new ResolutionException(
 					"A Global Country Code (GCC) could not be resolved for the given input. No match found in lookup table");
@@ -203,15 +434,15 @@ public class Resolver {
 	}
 	
 	/**
-	 * Find and return the Global Country Code (GCC) results for the given Extended
-	 * Country Code (ECC) and Broadcast Country Code
+	 * Find and return the Global Country Code (GCC) results for the given ISO
+	 * Country Code and Broadcast Country Code. Thread-safe.
 	 * 
-	 * @param country 				Country
+	 * @param isoCountryCode 		ISO 3166 two-letter country code
 	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
 	 * @return List<Result> 	Containing Global Country Code (GCC) of matching countries
 	 * @throws ResolutionException
 	 */
-	private List<Result> resolveGCCWithCountryCode(String isoCountryCode,
+	public List<Result> resolveGCCWithCountryCode(String isoCountryCode,
 			String broadcastCountryCode) throws ResolutionException {
 
 		// input validation
@@ -219,12 +450,13 @@ public class Resolver {
 			throw new IllegalArgumentException(
 					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
 		}
+		validateBroadcastCountryCode(broadcastCountryCode);
 
 		// upper case
 		isoCountryCode = isoCountryCode.toUpperCase(Locale.ENGLISH);
 
 		// get the Country for the given ISO Country Code
-		Country reportedCountry = mCountryLookupTable.get(isoCountryCode);
+		Country reportedCountry = mTable.getCountry(isoCountryCode);
 
 		if (reportedCountry == null) {
 			throw new ResolutionException(
@@ -234,29 +466,15 @@ public class Resolver {
 		// upper case
 		broadcastCountryCode = broadcastCountryCode.toUpperCase(Locale.ENGLISH);
 
-		List<Result> resultList = new ArrayList<Result>();
-
-		if (compareCountryIds(reportedCountry, broadcastCountryCode)) {
-			// the country id of the received RDS PI Code matches the country id
-			// of the reported location, return the ISO country code
-			Result result = new Result(broadcastCountryCode, reportedCountry.getECC(), reportedCountry.getISOCountryCode());
-			resultList.add(result);
-		} else {
-			// the country id & pi code do not match. Check countries adjacent
-			// to the reported country to find a match (resolving
-			// border-proximity issues)
-			for (String nearbyCountry : reportedCountry.getNearbyCountries()) {
-				String[] countryParts = nearbyCountry.split(":");
-
-				// compare the country id of the received broadcast country code
-				// to the country id for each of the nearby countries
-				if (broadcastCountryCode.equals(countryParts[0])) {
-					// an adjacent country matches, add to result list
-					Result result = new Result(countryParts[0], mCountryLookupTable.get(countryParts[1]).getECC(), countryParts[1]);
-					resultList.add(result);
-				}
-			}
+		// the countries matching each Country ID, either the reported country
+		// itself or countries adjacent to it (resolving border-proximity
+		// issues), are precomputed in the index
+		Country[] matches = mTable.getCountriesForCountryId(CountryTable.isoCountryIndex(isoCountryCode),
+				Character.digit(broadcastCountryCode.charAt(0), 16));
 
+		List<Result> resultList = new ArrayList<Result>();
+		for (Country country : matches) {
+			resultList.add(new Result(broadcastCountryCode, country.getECC(), country.getISOCountryCode()));
 		}
 		
 		if (resultList.size() == 0) {
@@ -268,35 +486,133 @@ public class Resolver {
 	}
 	
 	/**
-	 * Compare the Country IDs of the given country with the supplied country ID
+	 * Find and return the Global Country Code (GCC) results for the given ISO
+	 * Country Code and Broadcast Country Code from every country within the
+	 * given number of hops across the nearby countries of the lookup table,
+	 * for long-range reception such as at sea. Unlike
+	 * resolveGCCWithCountryCode(String, String), every matching country in
+	 * range is returned, nearest first. Thread-safe.
 	 * 
-	 * @param country 		Country
-	 * @param countryId 	Country ID (first nibble of RDS PI Code/DAB SId)
-	 * @return boolean
+	 * @param isoCountryCode 		ISO 3166 two-letter country code
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param maxHops 				Number of hops to search, from 0 (the reported
+	 *            					country only) to CountryTable.getMaxHops()
+	 * @return List<Result> 	Containing Global Country Code (GCC) of matching
+	 *         					countries, ordered by hop distance
+	 * @throws ResolutionException
 	 */
-	private boolean compareCountryIds(Country country, String countryId) {
-		for (String id : country.getCountryIds()) {
-			if (countryId.equals(id)) {
-				return true;
-			}
+	public List<Result> resolveGCCWithCountryCode(String isoCountryCode,
+			String broadcastCountryCode, int maxHops) throws ResolutionException {
+
+		// input validation
+		if (isoCountryCode == null || !isoCountryCode.matches("(?i)^[A-Z]{2}$")) {
+			throw new IllegalArgumentException(
+					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+		}
+		validateBroadcastCountryCode(broadcastCountryCode);
+
+		// upper case
+		broadcastCountryCode = broadcastCountryCode.toUpperCase(Locale.ENGLISH);
+
+		// the countries at each hop distance are precomputed in the table
+		List<Country> matches = mTable.getCountriesWithinHops(CountryTable.isoCountryIndex(isoCountryCode),
+				Character.digit(broadcastCountryCode.charAt(0), 16), maxHops);
+		if (matches == null) {
+			throw new ResolutionException(
+					"The supplied ISO Country Code is not recognised");
+		}
+
+		if (matches.size() == 0) {
+			throw new ResolutionException(
+					"A Global Country Code (GCC) could not be resolved for the given input. No match found in lookup table");
+		}
+
+		List<Result> resultList = new ArrayList<Result>();
+		for (Country country : matches) {
+			resultList.add(new Result(broadcastCountryCode, country.getECC(), country.getISOCountryCode()));
+		}
+		return resultList;
+	}
+
+	/**
+	 * Find and return the Global Country Code (GCC) results for the given
+	 * Mobile Country Code (MCC) and Broadcast Country Code. Each country using
+	 * the MCC is resolved as if it were the reported ISO Country Code and the
+	 * results are combined, those of the primary country first. Thread-safe.
+	 * 
+	 * @param mcc 					Three-digit Mobile Country Code (MCC)
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return List<Result> 	Containing Global Country Code (GCC) of matching countries
+	 * @throws ResolutionException
+	 */
+	public List<Result> resolveGCCWithMobileCountryCode(String mcc,
+			String broadcastCountryCode) throws ResolutionException {
+
+		// input validation
+		if (mcc == null || !mcc.matches("^[0-9]{3}$")) {
+			throw new IllegalArgumentException(
+					"Invalid MCC value. Value must be a three-digit Mobile Country Code (MCC)");
+		}
+		validateBroadcastCountryCode(broadcastCountryCode);
+
+		// upper case
+		broadcastCountryCode = broadcastCountryCode.toUpperCase(Locale.ENGLISH);
+
+		List<Country> matches = mTable.getCountriesForMcc(Integer.parseInt(mcc),
+				Character.digit(broadcastCountryCode.charAt(0), 16));
+		if (matches == null) {
+			throw new ResolutionException(
+					"The supplied Mobile Country Code (MCC) is not recognised");
 		}
-		return false;
+
+		if (matches.size() == 0) {
+			throw new ResolutionException(
+					"A Global Country Code (GCC) could not be resolved for the given input. No match found in lookup table");
+		}
+
+		List<Result> resultList = new ArrayList<Result>();
+		for (Country country : matches) {
+			resultList.add(new Result(broadcastCountryCode, country.getECC(), country.getISOCountryCode()));
+		}
+		return resultList;
+	}
+
+	/**
+	 * Find the Country for the given numeric Country ID and Extended Country
+	 * Code (ECC) without allocating, for use by decoders working on raw
+	 * broadcast data
+	 * 
+	 * @param countryId 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param ecc 			Extended Country Code (ECC)
+	 * @return Country, or null if no match is found in the lookup table
+	 */
+	Country getCountryForGCC(int countryId, int ecc) {
+		return mTable.getCountryForGCC(countryId, ecc);
 	}
 
 	/**
-	 * Convert a semi-colon delimited list String into a List
+	 * Find the countries matching the given numeric Country ID when the device
+	 * is located in the given country, without allocating
 	 * 
-	 * @param array 	Semi-colon delimited list String
-	 * @return List of values
+	 * @param isoCountryIndex 	Index of the ISO Country Code
+	 * @param countryId 		Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return Country[] 		Matching countries, or null if the ISO Country Code
+	 *         					is not recognised
 	 */
-	private List<String> csvArrayToList(String array) {
-		List<String> result = new ArrayList<String>();
-		if (array == null || array.equals("")) {
-			// return empty array
-			return result;
-		}
-		String[] parts = array.split(";");
-		Collections.addAll(result, parts);
-		return result;
+	Country[] getCountriesForCountryId(int isoCountryIndex, int countryId) {
+		return mTable.getCountriesForCountryId(isoCountryIndex, countryId);
+	}
+
+	/**
+	 * Check the Broadcast Country Code is a single hexadecimal character
+	 * 
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 */
+	private void validateBroadcastCountryCode(String broadcastCountryCode) {
+		if (broadcastCountryCode == null || broadcastCountryCode.length() != 1
+				|| Character.digit(broadcastCountryCode.charAt(0), 16) < 0) {
+			throw new IllegalArgumentException(
+					"Invalid Country ID. Must be a single hexadecimal character");
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This class stores the resolution state of a large number of concurrent
+ * listener sessions, keyed on a numeric session ID, without holding a Resolver
+ * per session.
+ * 
+ * The inputs (ISO Country Code, ECC and RDS PI Code/DAB SId) and the last
+ * resolved Global Country Code (GCC) of each session are packed into two long
+ * values held in primitive arrays, alongside the session ID, giving a footprint
+ * of 24 bytes per session plus free slots. Sessions are resolved as their
+ * inputs are updated, using the precomputed lookup tables of a shared Resolver.
+ * 
+ * The store is split into independently locked segments so that updates to
+ * different sessions rarely contend. All methods are thread-safe.
+ * 
+ * When registered with a TablePublisher, the store switches to each new table
+ * as it is published and resolves again only the sessions whose inputs fall in
+ * a changed cell.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class SessionStore implements TableChangeListener {
+
+	/**
+	 * Returned by getPackedGCC() for unknown or unresolved sessions
+	 */
+	public static final int UNRESOLVED = -1;
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	// packed inputs: ISO index (10 bits), ECC (8 bits), identifier kind (2
+	// bits), RDS PI Code/DAB SId (32 bits)
+	private static final int NO_ISO = 0x3FF;
+	private static final int KIND_NONE = 0;
+	private static final int KIND_RDS_PI = 1;
+	private static final int KIND_DAB_SID = 2;
+	private static final int KIND_DAB_SID_32 = 3;
+	private static final long NO_INPUTS = NO_ISO;
+
+	// packed results: GCC (12 bits), ISO index of the resolved country (10
+	// bits), number of results (8 bits)
+
+	private volatile Resolver mResolver;
+	private final Segment[] mSegments;
+	private final int mSegmentMask;
+
+	public SessionStore(Resolver resolver) {
+		this(resolver, 1024, 16);
+	}
+
+	/**
+	 * @param resolver 			Resolver providing the lookup tables
+	 * @param expectedSessions 	Expected number of sessions, used to size the
+	 *            				store initially
+	 * @param concurrency 		Expected number of concurrently updating threads,
+	 *            				used to determine the number of segments
+	 */
+	public SessionStore(Resolver resolver, int expectedSessions, int concurrency) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver must not be null");
+		}
+		if (expectedSessions < 0 || concurrency < 1) {
+			throw new IllegalArgumentException(
+					"Expected sessions must not be negative and concurrency must be at least 1");
+		}
+		mResolver = resolver;
+
+		int segments = 1;
+		while (segments < concurrency) {
+			segments <<= 1;
+		}
+		mSegments = new Segment[segments];
+		mSegmentMask = segments - 1;
+		for (int i = 0; i < segments; i++) {
+			mSegments[i] = new Segment(expectedSessions / segments);
+		}
+	}
+
+	/**
+	 * Set the ISO Country Code representing the current physical location of
+	 * the session's device
+	 * 
+	 * @param sessionId 		Session ID
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 */
+	public void setIsoCountryCode(long sessionId, String isoCountryCode) {
+		int index = CountryTable.isoCountryIndex(isoCountryCode);
+		if (index < 0) {
+			throw new IllegalArgumentException(
+					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+		}
+		// clears the ECC
+		segment(sessionId).update(sessionId, ~0x3FFFFL, index);
+	}
+
+	/**
+	 * Set the Extended Country Code (ECC) received from broadcast for a session
+	 * 
+	 * @param sessionId 	Session ID
+	 * @param ecc			Extended Country Code (ECC)
+	 */
+	public void setExtendedCountryCode(long sessionId, String ecc) {
+		int value = ecc != null && ecc.length() == 2 ? Primitives.parseHex(ecc, 0, 2) : -1;
+		if (value < 0) {
+			throw new IllegalArgumentException(
+					"Invalid ECC value. Value must be a valid hexadecimal Extended Country Code (ECC)");
+		}
+		// clears the ISO Country Code
+		segment(sessionId).update(sessionId, ~0x3FFFFL, NO_ISO | (value << 10));
+	}
+
+	/**
+	 * Set the RDS Programme Identification (PI) Code obtained from an FM
+	 * broadcast for a session
+	 * 
+	 * @param sessionId 	Session ID
+	 * @param rdsPi 		RDS Programme Identification (PI) Code
+	 */
+	public void setRdsPiCode(long sessionId, String rdsPi) {
+		int value = rdsPi != null && rdsPi.length() == 4 ? Primitives.parseHex(rdsPi, 0, 4) : -1;
+		if (value < 0) {
+			throw new IllegalArgumentException(
+					"Invalid PI value. Value must be a valid hexadecimal string RDS Programme Identification (PI) Code");
+		}
+		segment(sessionId).update(sessionId, 0x3FFFFL,
+				((long) value << 32) | (KIND_RDS_PI << 18));
+	}
+
+	/**
+	 * Set the DAB SId obtained from a DAB broadcast for a session
+	 * 
+	 * @param sessionId 	Session ID
+	 * @param dabSId 		DAB SId
+	 */
+	public void setDabSId(long sessionId, String dabSId) {
+		if (dabSId != null && dabSId.length() == 8) {
+			int high = Primitives.parseHex(dabSId, 0, 4);
+			int low = Primitives.parseHex(dabSId, 4, 8);
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException(
+						"Invalid Service Identifier (SId) value. Must be a valid 4 or 8-character hexadecimal string");
+			}
+			// a 32-bit SId sets the ECC and clears the ISO Country Code
+			long value = ((long) high << 16) | low;
+			long ecc = value >>> 24;
+			segment(sessionId).update(sessionId, 0L, (value << 32)
+					| (KIND_DAB_SID_32 << 18) | (ecc << 10) | NO_ISO);
+		} else {
+			int value = dabSId != null && dabSId.length() == 4 ? Primitives.parseHex(dabSId, 0, 4) : -1;
+			if (value < 0) {
+				throw new IllegalArgumentException(
+						"Invalid Service Identifier (SId) value. Must be a valid 4 or 8-character hexadecimal string");
+			}
+			segment(sessionId).update(sessionId, 0x3FFFFL,
+					((long) value << 32) | (KIND_DAB_SID << 18));
+		}
+	}
+
+	/**
+	 * Get the Global Country Code (GCC) last resolved for a session, packed as
+	 * an integer in the form 0xCEE (Country ID, ECC). Where more than one
+	 * country matches, the first is returned.
+	 * 
+	 * @param sessionId 	Session ID
+	 * @return int 			Packed GCC, or UNRESOLVED
+	 */
+	public int getPackedGCC(long sessionId) {
+		long result = segment(sessionId).getResult(sessionId);
+		return result == 0 ? UNRESOLVED : (int) (result & 0xFFF);
+	}
+
+	/**
+	 * Get the result last resolved for a session. Where more than one country
+	 * matches, the first is returned.
+	 * 
+	 * @param sessionId 	Session ID
+	 * @return Result 		Result, or null if the session is unknown or could
+	 *         				not be resolved
+	 */
+	public Result getResult(long sessionId) {
+		long result = segment(sessionId).getResult(sessionId);
+		if (result == 0) {
+			return null;
+		}
+		int gcc = (int) (result & 0xFFF);
+		int iso = (int) ((result >>> 12) & 0x3FF);
+		return new Result(
+				Integer.toHexString(gcc >>> 8).toUpperCase(Locale.ENGLISH),
+				String.format(Locale.ENGLISH, "%02X", gcc & 0xFF),
+				new String(new char[] { (char) ('A' + iso / 26), (char) ('A' + iso % 26) }));
+	}
+
+	/**
+	 * Get the number of countries which matched when a session was last
+	 * resolved
+	 * 
+	 * @param sessionId 	Session ID
+	 * @return int 			Number of matching countries, 0 if unresolved
+	 */
+	public int getResultCount(long sessionId) {
+		return (int) (segment(sessionId).getResult(sessionId) >>> 22);
+	}
+
+	/**
+	 * Remove a session from the store
+	 * 
+	 * @param sessionId 	Session ID
+	 */
+	public void remove(long sessionId) {
+		segment(sessionId).remove(sessionId);
+	}
+
+	/**
+	 * @return int 	Number of sessions in the store
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : mSegments) {
+			synchronized (segment) {
+				size += segment.mSize;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Resolve every session in the store again, e.g. after the lookup tables
+	 * have changed. Segments are processed one at a time, so updates to other
+	 * segments proceed meanwhile.
+	 */
+	public void resolveAll() {
+		for (Segment segment : mSegments) {
+			segment.resolveAll();
+		}
+	}
+
+	/**
+	 * Switch to a new table, resolving again the sessions whose results may
+	 * have changed. If the diff was not taken from the table in use, e.g. it
+	 * is stale or out of order, every session is resolved again. Segments are
+	 * processed one at a time, so updates to other segments proceed
+	 * meanwhile.
+	 * 
+	 * @param diff 	Differences between the table in use and the new table
+	 */
+	@Override
+	public void onTableChanged(TableDiff diff) {
+		boolean matchesTable = diff.getOldTable() == mResolver.getCountryTable();
+		mResolver = new Resolver(diff.getNewTable());
+		for (Segment segment : mSegments) {
+			if (matchesTable) {
+				segment.resolveChanged(diff);
+			} else {
+				segment.resolveAll();
+			}
+		}
+	}
+
+	private Segment segment(long sessionId) {
+		if (sessionId == EMPTY) {
+			throw new IllegalArgumentException("Invalid session ID");
+		}
+		return mSegments[(int) (Primitives.hash(sessionId) >>> 48) & mSegmentMask];
+	}
+
+	/**
+	 * Resolve packed inputs to a packed result, or 0 if they do not resolve
+	 */
+	private long resolve(long inputs) {
+		int kind = (int) (inputs >>> 18) & 0x3;
+		if (kind == KIND_NONE) {
+			return 0;
+		}
+		int countryId = countryId(inputs);
+		int iso = (int) inputs & 0x3FF;
+		int ecc = (int) (inputs >>> 10) & 0xFF;
+
+		if (iso != NO_ISO) {
+			Country[] matches = mResolver.getCountriesForCountryId(iso, countryId);
+			if (matches == null || matches.length == 0) {
+				return 0;
+			}
+			Country country = matches[0];
+			int countryEcc = country.getECC().length() == 2 ? Primitives.parseHex(country.getECC(), 0, 2) : -1;
+			if (countryEcc < 0) {
+				return 0;
+			}
+			return ((long) matches.length << 22)
+					| (CountryTable.isoCountryIndex(country.getISOCountryCode()) << 12)
+					| (countryId << 8) | countryEcc;
+		} else if (ecc != 0) {
+			Country country = mResolver.getCountryForGCC(countryId, ecc);
+			if (country == null) {
+				return 0;
+			}
+			return (1L << 22)
+					| (CountryTable.isoCountryIndex(country.getISOCountryCode()) << 12)
+					| (countryId << 8) | ecc;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return boolean 	true if the packed inputs fall in a cell changed by the
+	 *         			diff
+	 */
+	private static boolean isChanged(long inputs, TableDiff diff) {
+		int kind = (int) (inputs >>> 18) & 0x3;
+		if (kind == KIND_NONE) {
+			return false;
+		}
+		int iso = (int) inputs & 0x3FF;
+		int ecc = (int) (inputs >>> 10) & 0xFF;
+		if (iso != NO_ISO) {
+			return diff.isCountryChanged(iso, countryId(inputs));
+		}
+		return ecc != 0 && diff.isEccChanged(ecc, countryId(inputs));
+	}
+
+	private static int countryId(long inputs) {
+		int kind = (int) (inputs >>> 18) & 0x3;
+		long identifier = inputs >>> 32;
+		return (int) (kind == KIND_DAB_SID_32 ? identifier >>> 20 : identifier >>> 12) & 0xF;
+	}
+
+	/**
+	 * An open-addressing hash table of sessions guarded by its own lock
+	 */
+	private final class Segment {
+		private long[] mKeys;
+		private long[] mInputs;
+		private long[] mResults;
+		private int mSize;
+
+		Segment(int expectedSessions) {
+			int capacity = 16;
+			while (capacity * 3 < expectedSessions * 4) {
+				capacity <<= 1;
+			}
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			mKeys = new long[capacity];
+			mInputs = new long[capacity];
+			mResults = new long[capacity];
+			Arrays.fill(mKeys, EMPTY);
+		}
+
+		/**
+		 * Retain the inputs selected by the mask, apply the given bits and
+		 * resolve the session, creating it if necessary
+		 */
+		synchronized void update(long key, long retain, long set) {
+			int slot = find(key);
+			if (mKeys[slot] == EMPTY) {
+				if ((mSize + 1) * 4 > mKeys.length * 3) {
+					grow();
+					slot = find(key);
+				}
+				mKeys[slot] = key;
+				mInputs[slot] = NO_INPUTS;
+				mSize++;
+			}
+			long inputs = (mInputs[slot] & retain) | set;
+			mInputs[slot] = inputs;
+			mResults[slot] = resolve(inputs);
+		}
+
+		synchronized long getResult(long key) {
+			int slot = find(key);
+			return mKeys[slot] == EMPTY ? 0 : mResults[slot];
+		}
+
+		synchronized void remove(long key) {
+			int slot = find(key);
+			if (mKeys[slot] == EMPTY) {
+				return;
+			}
+			// backward shift deletion, keeping probe sequences intact
+			int mask = mKeys.length - 1;
+			int next = (slot + 1) & mask;
+			while (mKeys[next] != EMPTY) {
+				int ideal = (int) Primitives.hash(mKeys[next]) & mask;
+				if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+					mKeys[slot] = mKeys[next];
+					mInputs[slot] = mInputs[next];
+					mResults[slot] = mResults[next];
+					slot = next;
+				}
+				next = (next + 1) & mask;
+			}
+			mKeys[slot] = EMPTY;
+			mSize--;
+		}
+
+		synchronized void resolveAll() {
+			for (int i = 0; i < mKeys.length; i++) {
+				if (mKeys[i] != EMPTY) {
+					mResults[i] = resolve(mInputs[i]);
+				}
+			}
+		}
+
+		synchronized void resolveChanged(TableDiff diff) {
+			for (int i = 0; i < mKeys.length; i++) {
+				if (mKeys[i] != EMPTY && isChanged(mInputs[i], diff)) {
+					mResults[i] = resolve(mInputs[i]);
+				}
+			}
+		}
+
+		/**
+		 * Find the slot holding the key, or the empty slot where it belongs
+		 */
+		private int find(long key) {
+			int mask = mKeys.length - 1;
+			int slot = (int) Primitives.hash(key) & mask;
+			while (mKeys[slot] != EMPTY && mKeys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow() {
+			long[] keys = mKeys;
+			long[] inputs = mInputs;
+			long[] results = mResults;
+			allocate(keys.length * 2);
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != EMPTY) {
+					int slot = find(keys[i]);
+					mKeys[slot] = keys[i];
+					mInputs[slot] = inputs[i];
+					mResults[slot] = results[i];
+				}
+			}
+		}
+	}
+}
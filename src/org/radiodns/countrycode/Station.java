@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.List;
+
+/**
+ * A station loaded into a StationIndex
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class Station {
+	public String gcc;
+	public String serviceId;
+	public String name;
+	public List<String> bearers;
+
+	public Station(String gcc, String serviceId, String name, List<String> bearers) {
+		this.gcc = gcc;
+		this.serviceId = serviceId;
+		this.name = name;
+		this.bearers = bearers;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (obj instanceof Station &&
+				this.gcc.equals(((Station) obj).gcc) &&
+				this.serviceId.equals(((Station) obj).serviceId) &&
+				this.name.equals(((Station) obj).name) &&
+				this.bearers.equals(((Station) obj).bearers));
+	}
+
+	@Override
+	public int hashCode() {
+		return 37 * (this.gcc.hashCode() + this.serviceId.hashCode() + this.name.hashCode() + this.bearers.hashCode()) + 3;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + gcc + "." + serviceId + ")";
+	}
+}
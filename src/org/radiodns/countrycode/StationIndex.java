@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class maps a Global Country Code (GCC) and RDS PI Code or DAB SId to a
+ * station, so that the identity of a received service can be found without
+ * consulting a separate database.
+ * 
+ * The optional station dataset is a CSV file with one service per line:
+ * "GCC,PI or SId,Name,bearers", where bearers are separated by ';', e.g.
+ * "ce1,C479,Capital London,fm:ce1.c479.09580;dab:ce1.c1ce.c479.0". Blank lines
+ * and lines starting with '#' are ignored, and a later line for the same
+ * service replaces an earlier one.
+ * 
+ * Services are keyed on the packed integer (GCC << 32 | PI or SId) in an
+ * open-addressing hash table of primitive arrays, and the text of every
+ * station is held in a single character array, so that hundreds of thousands
+ * of services occupy a few bytes each beyond their text. Station objects are
+ * only created by lookups. Instances are immutable and thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class StationIndex {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final char SEPARATOR = '\n';
+
+	private final long[] mKeys;
+	private final int[] mRecords;
+	private final int mSize;
+	// text of record i runs from mTextOffsets[i] to mTextOffsets[i + 1]
+	private final int[] mTextOffsets;
+	private final char[] mText;
+
+	/**
+	 * Accumulates the records of a dataset while it is loaded, so that the
+	 * index itself only has final fields
+	 */
+	private static final class Builder {
+		private long[] mKeys;
+		private int[] mRecords;
+		private int mSize = 0;
+		private int[] mTextOffsets = new int[1024];
+		private int mRecordCount = 0;
+
+		Builder() {
+			allocate(1024);
+		}
+
+		/**
+		 * Add a record whose text ends at textEnd and point the key at it
+		 */
+		void put(long key, int textEnd) {
+			if (mRecordCount + 2 > mTextOffsets.length) {
+				mTextOffsets = Arrays.copyOf(mTextOffsets, mTextOffsets.length * 2);
+			}
+			int record = mRecordCount++;
+			mTextOffsets[record + 1] = textEnd;
+
+			int slot = find(mKeys, key);
+			if (mKeys[slot] == EMPTY) {
+				if ((mSize + 1) * 4 > mKeys.length * 3) {
+					grow();
+					slot = find(mKeys, key);
+				}
+				mKeys[slot] = key;
+				mSize++;
+			}
+			mRecords[slot] = record;
+		}
+
+		private void allocate(int capacity) {
+			mKeys = new long[capacity];
+			mRecords = new int[capacity];
+			Arrays.fill(mKeys, EMPTY);
+		}
+
+		private void grow() {
+			long[] keys = mKeys;
+			int[] records = mRecords;
+			allocate(keys.length * 2);
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != EMPTY) {
+					int slot = find(mKeys, keys[i]);
+					mKeys[slot] = keys[i];
+					mRecords[slot] = records[i];
+				}
+			}
+		}
+	}
+
+	private StationIndex(Builder builder, char[] text) {
+		mKeys = builder.mKeys;
+		mRecords = builder.mRecords;
+		mSize = builder.mSize;
+		mTextOffsets = builder.mTextOffsets;
+		mText = text;
+	}
+
+	/**
+	 * Load a station dataset. The stream is closed once read.
+	 * 
+	 * @param csv 	Station dataset, one "GCC,PI or SId,Name,bearers" entry per
+	 *            	line
+	 * @return StationIndex
+	 * @throws IOException
+	 */
+	public static StationIndex load(InputStream csv) throws IOException {
+		Builder builder = new Builder();
+		StringBuilder text = new StringBuilder();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(csv, "UTF-8"));
+		try {
+			String nextLine;
+			int lineNumber = 0;
+			while ((nextLine = reader.readLine()) != null) {
+				lineNumber++;
+				if (nextLine.trim().length() == 0 || nextLine.startsWith("#")) {
+					continue;
+				}
+				String[] vals = nextLine.split(",", 4);
+				if (vals.length < 3) {
+					throw new IOException("Invalid station entry on line " + lineNumber + ": " + nextLine);
+				}
+				int gcc = parseHex(vals[0].trim());
+				int serviceId = parseHex(vals[1].trim());
+				if (vals[0].trim().length() != 3 || gcc < 0 || !isServiceId(vals[1].trim())) {
+					throw new IOException("Invalid GCC or service identifier on line " + lineNumber + ": " + nextLine);
+				}
+
+				text.append(vals[2].trim());
+				if (vals.length > 3) {
+					for (String bearer : vals[3].split(";")) {
+						if (bearer.trim().length() > 0) {
+							text.append(SEPARATOR).append(bearer.trim());
+						}
+					}
+				}
+				builder.put(key(gcc, serviceId), text.length());
+			}
+		} finally {
+			reader.close();
+		}
+
+		char[] chars = new char[text.length()];
+		text.getChars(0, text.length(), chars, 0);
+		return new StationIndex(builder, chars);
+	}
+
+	/**
+	 * @return int 	Number of services in the index
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Find a station by numeric identifiers
+	 * 
+	 * @param gcc 			Global Country Code (GCC), e.g. 0xCE1
+	 * @param serviceId 	RDS PI Code or 16 or 32-bit DAB SId
+	 * @return Station 		Station, or null if not in the index
+	 */
+	public Station lookup(int gcc, int serviceId) {
+		long key = key(gcc, serviceId);
+		int slot = find(mKeys, key);
+		if (mKeys[slot] == EMPTY) {
+			return null;
+		}
+		int record = mRecords[slot];
+		int start = mTextOffsets[record];
+		int end = mTextOffsets[record + 1];
+
+		// the name followed by each bearer, separated by SEPARATOR
+		String name = null;
+		List<String> bearers = new ArrayList<String>();
+		int fieldStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || mText[i] == SEPARATOR) {
+				String field = new String(mText, fieldStart, i - fieldStart);
+				if (name == null) {
+					name = field;
+				} else {
+					bearers.add(field);
+				}
+				fieldStart = i + 1;
+			}
+		}
+		String id = String.format(serviceId >>> 16 == 0 ? "%04x" : "%08x", serviceId);
+		return new Station(String.format("%03x", gcc & 0xFFF), id, name,
+				Collections.unmodifiableList(bearers));
+	}
+
+	/**
+	 * Find a station by hexadecimal identifiers
+	 * 
+	 * @param gcc 			Global Country Code (GCC), e.g. "ce1"
+	 * @param serviceId 	RDS PI Code or 4 or 8-character DAB SId
+	 * @return Station 		Station, or null if not in the index
+	 */
+	public Station lookup(String gcc, String serviceId) {
+		if (gcc == null || gcc.length() != 3 || parseHex(gcc) < 0) {
+			throw new IllegalArgumentException("Invalid GCC. Must be a 3-character hexadecimal string");
+		}
+		if (!isServiceId(serviceId)) {
+			throw new IllegalArgumentException(
+					"Invalid service identifier. Must be a valid 4 or 8-character hexadecimal string");
+		}
+		return lookup(parseHex(gcc), parseHex(serviceId));
+	}
+
+	private static long key(int gcc, int serviceId) {
+		return ((long) (gcc & 0xFFF) << 32) | (serviceId & 0xFFFFFFFFL);
+	}
+
+	private static boolean isServiceId(String serviceId) {
+		return serviceId != null && serviceId.matches("(?i)^[0-9A-F]{4}$|^[0-9A-F]{8}$");
+	}
+
+	/**
+	 * Parse a hexadecimal string of up to 8 characters
+	 * 
+	 * @return int 	Value, or -1 if not a valid hexadecimal string
+	 */
+	private static int parseHex(String value) {
+		if (value.length() == 0 || value.length() > 8) {
+			return -1;
+		}
+		return Primitives.parseHex(value, 0, value.length());
+	}
+
+	/**
+	 * Find the slot holding the key, or the empty slot where it belongs
+	 */
+	private static int find(long[] keys, long key) {
+		int mask = keys.length - 1;
+		int slot = (int) Primitives.hash(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
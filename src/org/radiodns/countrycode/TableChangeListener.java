@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+/**
+ * Receives notification that a TablePublisher has replaced its CountryTable,
+ * with the resolution cells which changed, so that results derived from the
+ * old table can be invalidated selectively.
+ * 
+ * Implementations are called on the publishing thread.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public interface TableChangeListener {
+
+	/**
+	 * Called when a new table has been published
+	 * 
+	 * @param diff 	Differences between the previous and the new table
+	 */
+	void onTableChanged(TableDiff diff);
+}
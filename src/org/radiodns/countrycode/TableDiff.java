@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class compares two versions of a CountryTable and records exactly which
+ * resolution cells give a different answer: which (ISO Country Code, Country
+ * ID), (ECC, Country ID) and (MCC, Country ID) pairs resolve to different
+ * countries, which (ISO Country Code, Country ID, number of hops) searches
+ * across the nearby countries find different countries, and which Country IDs
+ * have different candidates when no location is known.
+ * 
+ * A diff is published to TableChangeListeners by a TablePublisher, so that
+ * caches of results derived from the old table can invalidate only the
+ * affected entries rather than being flushed. Instances are immutable and
+ * thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class TableDiff {
+
+	private final CountryTable mOldTable;
+	private final CountryTable mNewTable;
+	private final BitSet mCountryCells = new BitSet(26 * 26 * 16);
+	private final BitSet mEccCells = new BitSet(256 * 16);
+	private final BitSet mMccCells = new BitSet(1000 * 16);
+	private final BitSet mCandidateCells = new BitSet(16);
+	// indexed on ((hops * 676 + ISO index) << 4 | Country ID), for hops up to
+	// the larger maximum of the two tables
+	private final BitSet mHopCells;
+	private final int mMaxHops;
+	private final List<String> mChanges;
+
+	private TableDiff(CountryTable oldTable, CountryTable newTable) {
+		mOldTable = oldTable;
+		mNewTable = newTable;
+		List<String> changes = new ArrayList<String>();
+
+		for (int iso = 0; iso < 26 * 26; iso++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				String before = describe(oldTable.getCountriesForCountryId(iso, countryId));
+				String after = describe(newTable.getCountriesForCountryId(iso, countryId));
+				if (!before.equals(after)) {
+					mCountryCells.set((iso << 4) | countryId);
+					changes.add(String.format("ISO %s + %X: [%s] -> [%s]", isoCountryCode(iso),
+							countryId, before, after));
+				}
+			}
+		}
+		for (int ecc = 0; ecc < 256; ecc++) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				Country before = oldTable.getCountryForGCC(countryId, ecc);
+				Country after = newTable.getCountryForGCC(countryId, ecc);
+				String beforeIso = before == null ? "" : before.getISOCountryCode();
+				String afterIso = after == null ? "" : after.getISOCountryCode();
+				if (!beforeIso.equals(afterIso)) {
+					mEccCells.set((ecc << 4) | countryId);
+					changes.add(String.format("ECC %02X + %X: [%s] -> [%s]", ecc, countryId,
+							beforeIso, afterIso));
+				}
+			}
+		}
+		for (int mcc = 0; mcc < 1000; mcc++) {
+			if (oldTable.getCountriesForMcc(mcc) == null && newTable.getCountriesForMcc(mcc) == null) {
+				continue;
+			}
+			for (int countryId = 0; countryId < 16; countryId++) {
+				String before = describe(oldTable.getCountriesForMcc(mcc, countryId));
+				String after = describe(newTable.getCountriesForMcc(mcc, countryId));
+				if (!before.equals(after)) {
+					mMccCells.set((mcc << 4) | countryId);
+					changes.add(String.format("MCC %03d + %X: [%s] -> [%s]", mcc, countryId,
+							before, after));
+				}
+			}
+		}
+		// a change to the nearby countries of one country changes the searches
+		// of every country within range of it, not only its own cells
+		mMaxHops = Math.max(oldTable.getMaxHops(), newTable.getMaxHops());
+		mHopCells = new BitSet((mMaxHops + 1) * 26 * 26 * 16);
+		for (int iso = 0; iso < 26 * 26; iso++) {
+			if (oldTable.getCountriesWithinHops(iso, 0, 0) == null
+					&& newTable.getCountriesWithinHops(iso, 0, 0) == null) {
+				continue;
+			}
+			for (int hops = 0; hops <= mMaxHops; hops++) {
+				for (int countryId = 0; countryId < 16; countryId++) {
+					String before = describe(getCountriesWithinHops(oldTable, iso, countryId, hops));
+					String after = describe(getCountriesWithinHops(newTable, iso, countryId, hops));
+					if (!before.equals(after)) {
+						mHopCells.set(((hops * 26 * 26 + iso) << 4) | countryId);
+						changes.add(String.format("ISO %s + %X within %d hops: [%s] -> [%s]",
+								isoCountryCode(iso), countryId, hops, before, after));
+					}
+				}
+			}
+		}
+		for (int countryId = 0; countryId < 16; countryId++) {
+			if (!oldTable.getCandidateIndex().getCandidates(countryId).equals(
+					newTable.getCandidateIndex().getCandidates(countryId))) {
+				mCandidateCells.set(countryId);
+				changes.add(String.format("Candidates for %X", countryId));
+			}
+		}
+		mChanges = Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * Compare two versions of a table
+	 * 
+	 * @param oldTable 		Table in use
+	 * @param newTable 		Table replacing it
+	 * @return TableDiff
+	 */
+	public static TableDiff compare(CountryTable oldTable, CountryTable newTable) {
+		if (oldTable == null || newTable == null) {
+			throw new IllegalArgumentException("CountryTables must not be null");
+		}
+		return new TableDiff(oldTable, newTable);
+	}
+
+	/**
+	 * @return CountryTable 	Table compared from
+	 */
+	public CountryTable getOldTable() {
+		return mOldTable;
+	}
+
+	/**
+	 * @return CountryTable 	Table compared to
+	 */
+	public CountryTable getNewTable() {
+		return mNewTable;
+	}
+
+	/**
+	 * @return boolean 	true if every resolution gives the same answer with
+	 *         			both tables
+	 */
+	public boolean isEmpty() {
+		return mChanges.isEmpty();
+	}
+
+	/**
+	 * @return List<String> 	Description of each changed cell, e.g.
+	 *         					"ISO GB + C: [GB E1] -> [GB E2]"
+	 */
+	public List<String> getChanges() {
+		return mChanges;
+	}
+
+	/**
+	 * @param isoCountryCode 		ISO 3166 two-letter country code
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return boolean 				true if resolveGCCWithCountryCode() gives a
+	 *         						different answer
+	 */
+	public boolean isCountryChanged(String isoCountryCode, String broadcastCountryCode) {
+		int iso = CountryTable.isoCountryIndex(isoCountryCode);
+		if (iso < 0) {
+			throw new IllegalArgumentException(
+					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+		}
+		return isCountryChanged(iso, countryId(broadcastCountryCode));
+	}
+
+	/**
+	 * @param isoCountryCode 		ISO 3166 two-letter country code
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @param maxHops 				Number of hops searched, from 0 to the larger
+	 *            					getMaxHops() of the two tables
+	 * @return boolean 				true if resolveGCCWithCountryCode() with the
+	 *         						number of hops gives a different answer
+	 */
+	public boolean isCountryChanged(String isoCountryCode, String broadcastCountryCode,
+			int maxHops) {
+		int iso = CountryTable.isoCountryIndex(isoCountryCode);
+		if (iso < 0) {
+			throw new IllegalArgumentException(
+					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+		}
+		if (maxHops < 0 || maxHops > mMaxHops) {
+			throw new IllegalArgumentException("Number of hops must be from 0 to " + mMaxHops);
+		}
+		return mHopCells.get(((maxHops * 26 * 26 + iso) << 4) | countryId(broadcastCountryCode));
+	}
+
+	/**
+	 * @param ecc 					Extended Country Code (ECC)
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return boolean 				true if resolveGCCWithECC() gives a different
+	 *         						answer
+	 */
+	public boolean isEccChanged(String ecc, String broadcastCountryCode) {
+		int value = CountryTable.parseEcc(ecc);
+		if (value < 0) {
+			throw new IllegalArgumentException(
+					"Invalid ECC value. Value must be a valid hexadecimal Extended Country Code (ECC)");
+		}
+		return isEccChanged(value, countryId(broadcastCountryCode));
+	}
+
+	/**
+	 * @param mcc 					Three-digit Mobile Country Code (MCC)
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return boolean 				true if resolveGCCWithMobileCountryCode()
+	 *         						gives a different answer
+	 */
+	public boolean isMccChanged(String mcc, String broadcastCountryCode) {
+		if (mcc == null || !mcc.matches("^[0-9]{3}$")) {
+			throw new IllegalArgumentException(
+					"Invalid MCC value. Value must be a three-digit Mobile Country Code (MCC)");
+		}
+		return mMccCells.get((Integer.parseInt(mcc) << 4) | countryId(broadcastCountryCode));
+	}
+
+	/**
+	 * @param broadcastCountryCode 	Country ID (first nibble of RDS PI Code/DAB SId)
+	 * @return boolean 				true if the default candidates returned by
+	 *         						resolveCandidates() are different
+	 */
+	public boolean isCandidatesChanged(String broadcastCountryCode) {
+		return mCandidateCells.get(countryId(broadcastCountryCode));
+	}
+
+	boolean isCountryChanged(int isoCountryIndex, int countryId) {
+		return mCountryCells.get((isoCountryIndex << 4) | countryId);
+	}
+
+	boolean isEccChanged(int ecc, int countryId) {
+		return mEccCells.get((ecc << 4) | countryId);
+	}
+
+	private static int countryId(String broadcastCountryCode) {
+		int countryId = broadcastCountryCode == null || broadcastCountryCode.length() != 1 ? -1
+				: Character.digit(broadcastCountryCode.charAt(0), 16);
+		if (countryId < 0) {
+			throw new IllegalArgumentException(
+					"Invalid Country ID. Must be a single hexadecimal character");
+		}
+		return countryId;
+	}
+
+	/**
+	 * Describe the answer of a cell as the ISO Country Code and ECC of each
+	 * matching country
+	 */
+	private static String describe(Country[] countries) {
+		if (countries == null) {
+			return "";
+		}
+		StringBuilder result = new StringBuilder();
+		for (Country country : countries) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append(country.getISOCountryCode()).append(' ')
+					.append(country.getECC().toUpperCase(Locale.ENGLISH));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Search a table, finding no countries beyond the hops it precomputed
+	 */
+	private static List<Country> getCountriesWithinHops(CountryTable table, int iso,
+			int countryId, int hops) {
+		return hops > table.getMaxHops() ? null : table.getCountriesWithinHops(iso, countryId, hops);
+	}
+
+	private static String describe(List<Country> countries) {
+		return countries == null ? "" : describe(countries.toArray(new Country[countries.size()]));
+	}
+
+	private static String isoCountryCode(int iso) {
+		return new String(new char[] { (char) ('A' + iso / 26), (char) ('A' + iso % 26) });
+	}
+}
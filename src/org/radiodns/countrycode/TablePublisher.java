@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class holds the current version of a CountryTable and notifies
+ * registered TableChangeListeners, such as SessionStores and TunerSessions,
+ * of the cells which change when a new version is published. All methods are
+ * thread-safe.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class TablePublisher {
+
+	private final List<TableChangeListener> mListeners = new CopyOnWriteArrayList<TableChangeListener>();
+	private CountryTable mTable;
+
+	/**
+	 * @param table 	Table initially in use
+	 */
+	public TablePublisher(CountryTable table) {
+		if (table == null) {
+			throw new IllegalArgumentException("CountryTable must not be null");
+		}
+		mTable = table;
+	}
+
+	/**
+	 * @return CountryTable 	Table currently in use
+	 */
+	public synchronized CountryTable getTable() {
+		return mTable;
+	}
+
+	/**
+	 * @param listener 	TableChangeListener to notify of new tables
+	 */
+	public void addListener(TableChangeListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("TableChangeListener must not be null");
+		}
+		mListeners.add(listener);
+	}
+
+	/**
+	 * @param listener 	TableChangeListener to stop notifying
+	 */
+	public void removeListener(TableChangeListener listener) {
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * Replace the table in use, notifying listeners of the changed cells, if
+	 * any. Publications are serialised, so listeners receive diffs in order.
+	 * 
+	 * @param table 		New version of the table
+	 * @return TableDiff 	Differences from the previous table
+	 */
+	public synchronized TableDiff publish(CountryTable table) {
+		TableDiff diff = TableDiff.compare(mTable, table);
+		mTable = table;
+		for (TableChangeListener listener : mListeners) {
+			listener.onTableChanged(diff);
+		}
+		return diff;
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class holds the resolution state of a single tuner. It remembers the
+ * last inputs and result so that repeated calls to resolveGCC() with unchanged
+ * inputs do not repeat the resolution, and applies hysteresis to the reported
+ * location so that a device close to a border does not flap between countries.
+ * 
+ * Only the inputs relevant to resolution are compared: a new RDS PI Code or DAB
+ * SId with the same Country ID as the previous one returns the cached result.
+ * 
+ * A change in ISO Country Code is only accepted once it has been observed for
+ * the configured number of consecutive updates and for the configured dwell
+ * time. By default both are disabled and location changes apply immediately,
+ * as with Resolver. Instances are not thread-safe; use one session per tuner.
+ * 
+ * When registered with a TablePublisher, new tables are queued and applied by
+ * the next call to resolveGCC(), which keeps the cached result unless the
+ * cell it came from has changed. onTableChanged() may be called from any
+ * thread.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class TunerSession implements TableChangeListener {
+
+	private Resolver mResolver;
+	private final Queue<TableDiff> mTableChanges = new ConcurrentLinkedQueue<TableDiff>();
+
+	private long mDwellTime = 0;
+	private int mObservations = 1;
+
+	// accepted inputs
+	private String mIsoCountryCode = null;
+	private String mEcc = null;
+	private boolean mUseEcc = false;
+	private char mBroadcastCountryId = 0;
+	private String mRdsPi = null;
+	private String mDabSId = null;
+
+	// location awaiting acceptance
+	private String mCandidateCountryCode = null;
+	private long mCandidateSince = 0;
+	private int mCandidateCount = 0;
+
+	// last resolution
+	private String mLastLocation = null;
+	private boolean mLastUseEcc = false;
+	private char mLastBroadcastCountryId = 0;
+	private List<Result> mLastResult = null;
+	private boolean mChanged = false;
+
+	public TunerSession() {
+		this(new Resolver());
+	}
+
+	public TunerSession(Resolver resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("Resolver must not be null");
+		}
+		mResolver = resolver;
+	}
+
+	/**
+	 * Set the hysteresis applied before switching to a newly reported country
+	 * 
+	 * @param dwellTime 	Time in milliseconds a new country must be reported
+	 *            			for before it is accepted, 0 to disable
+	 * @param observations 	Number of consecutive updates reporting a new
+	 *            			country before it is accepted, 1 to disable
+	 */
+	public void setHysteresis(long dwellTime, int observations) {
+		if (dwellTime < 0 || observations < 1) {
+			throw new IllegalArgumentException(
+					"Dwell time must not be negative and observations must be at least 1");
+		}
+		mDwellTime = dwellTime;
+		mObservations = observations;
+	}
+
+	/**
+	 * Report the ISO Country Code of the current physical location of the
+	 * device
+	 * 
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 */
+	public void setIsoCountryCode(String isoCountryCode) {
+		setIsoCountryCode(isoCountryCode, System.currentTimeMillis());
+	}
+
+	/**
+	 * Report the ISO Country Code of the current physical location of the
+	 * device, observed at the given time
+	 * 
+	 * @param isoCountryCode 	ISO 3166 two-letter country code
+	 * @param time 				Time of the observation in milliseconds
+	 */
+	public void setIsoCountryCode(String isoCountryCode, long time) {
+		// input validation
+		if (isoCountryCode == null || !isoCountryCode.matches("(?i)^[A-Z]{2}$")) {
+			throw new IllegalArgumentException(
+					"Invalid country code. Must be an ISO 3166-1 alpha-2 country code");
+		}
+		isoCountryCode = isoCountryCode.toUpperCase(Locale.ENGLISH);
+		mUseEcc = false;
+
+		if (mIsoCountryCode == null || mIsoCountryCode.equals(isoCountryCode)) {
+			// first fix, or back in the accepted country
+			mIsoCountryCode = isoCountryCode;
+			mCandidateCountryCode = null;
+			return;
+		}
+
+		if (isoCountryCode.equals(mCandidateCountryCode)) {
+			mCandidateCount++;
+		} else {
+			mCandidateCountryCode = isoCountryCode;
+			mCandidateSince = time;
+			mCandidateCount = 1;
+		}
+
+		if (mCandidateCount >= mObservations && time - mCandidateSince >= mDwellTime) {
+			mIsoCountryCode = isoCountryCode;
+			mCandidateCountryCode = null;
+		}
+	}
+
+	/**
+	 * Set the Extended Country Code (ECC) received from broadcast. No
+	 * hysteresis is applied.
+	 * 
+	 * @param ecc	Extended Country Code (ECC)
+	 */
+	public void setExtendedCountryCode(String ecc) {
+		mResolver.setExtendedCountryCode(ecc);
+		mEcc = ecc.toUpperCase(Locale.ENGLISH);
+		mUseEcc = true;
+	}
+
+	/**
+	 * Set the RDS Programme Identification (PI) Code obtained from an FM broadcast
+	 * 
+	 * @param rdsPi RDS Programme Identification (PI) Code
+	 */
+	public void setRdsPiCode(String rdsPi) {
+		mResolver.setRdsPiCode(rdsPi);
+		mRdsPi = rdsPi;
+		mDabSId = null;
+		mBroadcastCountryId = Character.toUpperCase(rdsPi.charAt(0));
+	}
+
+	/**
+	 * Set the DAB SId obtained from a DAB broadcast
+	 * 
+	 * @param dabSId DAB SId
+	 */
+	public void setDabSId(String dabSId) {
+		mResolver.setDabSId(dabSId);
+		mRdsPi = null;
+		mDabSId = dabSId;
+		if (dabSId.length() == 8) {
+			mEcc = dabSId.substring(0, 2).toUpperCase(Locale.ENGLISH);
+			mUseEcc = true;
+			mBroadcastCountryId = Character.toUpperCase(dabSId.charAt(2));
+		} else {
+			mBroadcastCountryId = Character.toUpperCase(dabSId.charAt(0));
+		}
+	}
+
+	/**
+	 * Resolve the Global Country Code (GCC) from the accepted inputs. The
+	 * previous result is returned without repeating the resolution if the
+	 * location and Country ID are unchanged.
+	 * 
+	 * @return List<Result> Containing Global Country Code (GCC) of matching
+	 *         countries
+	 * @throws ResolutionException
+	 */
+	public List<Result> resolveGCC() throws ResolutionException {
+		if (mBroadcastCountryId == 0) {
+			throw new IllegalStateException(
+					"RDS Programme Identification (PI) OR Service Identifier (SId) must be set before attempting to resolve");
+		}
+		applyTableChanges();
+		String location = mUseEcc ? mEcc : mIsoCountryCode;
+		if (location == null) {
+			throw new IllegalStateException(
+					"ISO Country Code OR Extended Country Code (ECC) value must be set before attempting to resolve");
+		}
+
+		if (mLastResult != null && mBroadcastCountryId == mLastBroadcastCountryId
+				&& mUseEcc == mLastUseEcc && location.equals(mLastLocation)) {
+			mChanged = false;
+			return mLastResult;
+		}
+
+		if (mUseEcc) {
+			mResolver.setExtendedCountryCode(mEcc);
+		} else {
+			mResolver.setIsoCountryCode(mIsoCountryCode);
+		}
+		List<Result> result = Collections.unmodifiableList(mResolver.resolveGCC());
+
+		mChanged = mLastResult == null || !mLastResult.equals(result);
+		mLastResult = result;
+		mLastLocation = location;
+		mLastUseEcc = mUseEcc;
+		mLastBroadcastCountryId = mBroadcastCountryId;
+		return result;
+	}
+
+	/**
+	 * Queue a new table, applied by the next call to resolveGCC()
+	 * 
+	 * @param diff 	Differences between the table in use and the new table
+	 */
+	@Override
+	public void onTableChanged(TableDiff diff) {
+		mTableChanges.add(diff);
+	}
+
+	/**
+	 * Switch to any queued tables, forcing the cached result to be resolved
+	 * again if its cell has changed
+	 */
+	private void applyTableChanges() {
+		TableDiff diff;
+		while ((diff = mTableChanges.poll()) != null) {
+			if (mLastLocation != null) {
+				String broadcastCountryId = String.valueOf(mLastBroadcastCountryId);
+				boolean changed = mLastUseEcc ? diff.isEccChanged(mLastLocation, broadcastCountryId)
+						: diff.isCountryChanged(mLastLocation, broadcastCountryId);
+				if (changed || diff.getOldTable() != mResolver.getCountryTable()) {
+					// the previous result is kept for hasResultChanged()
+					mLastLocation = null;
+				}
+			}
+			mResolver = new Resolver(diff.getNewTable());
+			if (mRdsPi != null) {
+				mResolver.setRdsPiCode(mRdsPi);
+			} else if (mDabSId != null) {
+				mResolver.setDabSId(mDabSId);
+			}
+		}
+	}
+
+	/**
+	 * @return boolean 	true if the last call to resolveGCC() returned a
+	 *         			different result to the call before it
+	 */
+	public boolean hasResultChanged() {
+		return mChanged;
+	}
+
+	/**
+	 * @return String 	ISO Country Code currently accepted as the location of
+	 *         			the device, or null if none has been reported
+	 */
+	public String getIsoCountryCode() {
+		return mIsoCountryCode;
+	}
+
+	/**
+	 * Forget all inputs and the cached result, e.g. when the tuner is switched
+	 * off
+	 */
+	public void reset() {
+		mIsoCountryCode = null;
+		mEcc = null;
+		mUseEcc = false;
+		mBroadcastCountryId = 0;
+		mRdsPi = null;
+		mDabSId = null;
+		mCandidateCountryCode = null;
+		mLastLocation = null;
+		mLastResult = null;
+		mChanged = false;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded for a sample of the resolutions performed by Resolver.resolveGCC()
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+@Name("org.radiodns.countrycode.Resolution")
+@Label("GCC Resolution")
+@Category({ "RadioDNS", "Country Code Resolver" })
+@Description("Sampled Global Country Code (GCC) resolution")
+@StackTrace(false)
+final class ResolutionEvent extends jdk.jfr.Event {
+
+	@Label("ISO Country Code")
+	String isoCountryCode;
+
+	@Label("Mobile Country Code")
+	String mcc;
+
+	@Label("Extended Country Code")
+	String ecc;
+
+	@Label("Country ID")
+	String countryId;
+
+	@Label("Path")
+	@Description("Decision taken: ECC, COUNTRY, NEARBY_COUNTRY or MCC")
+	String path;
+
+	@Label("Results")
+	@Description("Number of results, 0 if resolution failed")
+	int results;
+
+	@Label("Resolution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long resolutionTime;
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode.jfr;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.radiodns.countrycode.ResolutionListener;
+import org.radiodns.countrycode.Resolver;
+
+/**
+ * This class publishes JDK Flight Recorder (JFR) events for Resolver table
+ * loading, a sample of resolutions, and a periodic summary of all resolutions.
+ * 
+ * Once registered, it installs itself as the Resolver's ResolutionListener only
+ * while a recording is running, so resolutions are not timed or counted when
+ * Flight Recorder is idle. Requires Java 11 or later; the rest of the library
+ * does not depend on this package.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public final class ResolverEvents implements ResolutionListener {
+
+	private static final ResolverEvents INSTANCE = new ResolverEvents();
+
+	private static boolean sRegistered = false;
+
+	private static final FlightRecorderListener RECORDER_LISTENER = new FlightRecorderListener() {
+		@Override
+		public void recordingStateChanged(Recording recording) {
+			update();
+		}
+	};
+
+	private static final Runnable SUMMARY_HOOK = new Runnable() {
+		@Override
+		public void run() {
+			INSTANCE.commitSummary();
+		}
+	};
+
+	private volatile int mSampleInterval = 100;
+
+	private final LongAdder mResolutions = new LongAdder();
+	private final LongAdder mFailures = new LongAdder();
+	private final LongAdder mEccResolutions = new LongAdder();
+	private final LongAdder mCountryResolutions = new LongAdder();
+	private final LongAdder mNearbyCountryResolutions = new LongAdder();
+	private final LongAdder mMccResolutions = new LongAdder();
+	private final LongAdder mResolutionTime = new LongAdder();
+
+	private ResolverEvents() {
+	}
+
+	/**
+	 * Register the events with Flight Recorder and start listening for
+	 * recordings
+	 */
+	public static synchronized void register() {
+		if (sRegistered) {
+			return;
+		}
+		FlightRecorder.register(TableLoadEvent.class);
+		FlightRecorder.register(ResolutionEvent.class);
+		FlightRecorder.register(ResolverSummaryEvent.class);
+		FlightRecorder.addPeriodicEvent(ResolverSummaryEvent.class, SUMMARY_HOOK);
+		FlightRecorder.addListener(RECORDER_LISTENER);
+		sRegistered = true;
+		update();
+	}
+
+	/**
+	 * Stop publishing events and remove the Resolver's ResolutionListener
+	 */
+	public static synchronized void unregister() {
+		if (!sRegistered) {
+			return;
+		}
+		FlightRecorder.removeListener(RECORDER_LISTENER);
+		FlightRecorder.removePeriodicEvent(SUMMARY_HOOK);
+		FlightRecorder.unregister(TableLoadEvent.class);
+		FlightRecorder.unregister(ResolutionEvent.class);
+		FlightRecorder.unregister(ResolverSummaryEvent.class);
+		sRegistered = false;
+		Resolver.setResolutionListener(null);
+	}
+
+	/**
+	 * Set how often a resolution is recorded as an individual event
+	 * 
+	 * @param interval 	On average one in this many resolutions is recorded,
+	 *            		1 to record all of them. Defaults to 100.
+	 */
+	public static void setSampleInterval(int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Sample interval must be at least 1");
+		}
+		INSTANCE.mSampleInterval = interval;
+	}
+
+	/**
+	 * Install the listener while any recording is running
+	 */
+	private static synchronized void update() {
+		if (!sRegistered) {
+			return;
+		}
+		boolean running = false;
+		if (FlightRecorder.isInitialized()) {
+			for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+				if (recording.getState() == RecordingState.RUNNING) {
+					running = true;
+					break;
+				}
+			}
+		}
+		Resolver.setResolutionListener(running ? INSTANCE : null);
+	}
+
+	@Override
+	public void onTableLoaded(int countries, long duration) {
+		TableLoadEvent event = new TableLoadEvent();
+		if (event.isEnabled()) {
+			event.countries = countries;
+			event.loadTime = duration;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onResolved(String isoCountryCode, String mcc, String ecc,
+			String broadcastCountryCode, Path path, int results, long duration) {
+		mResolutions.increment();
+		mResolutionTime.add(duration);
+		if (results == 0) {
+			mFailures.increment();
+		}
+		switch (path) {
+		case ECC:
+			mEccResolutions.increment();
+			break;
+		case COUNTRY:
+			mCountryResolutions.increment();
+			break;
+		case NEARBY_COUNTRY:
+			mNearbyCountryResolutions.increment();
+			break;
+		case MCC:
+			mMccResolutions.increment();
+			break;
+		}
+
+		int interval = mSampleInterval;
+		if (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0) {
+			return;
+		}
+		ResolutionEvent event = new ResolutionEvent();
+		if (event.isEnabled()) {
+			event.isoCountryCode = isoCountryCode;
+			event.mcc = mcc;
+			event.ecc = ecc;
+			event.countryId = broadcastCountryCode;
+			event.path = path.name();
+			event.results = results;
+			event.resolutionTime = duration;
+			event.commit();
+		}
+	}
+
+	private void commitSummary() {
+		ResolverSummaryEvent event = new ResolverSummaryEvent();
+		event.resolutions = mResolutions.sumThenReset();
+		event.failures = mFailures.sumThenReset();
+		event.eccResolutions = mEccResolutions.sumThenReset();
+		event.countryResolutions = mCountryResolutions.sumThenReset();
+		event.nearbyCountryResolutions = mNearbyCountryResolutions.sumThenReset();
+		event.mccResolutions = mMccResolutions.sumThenReset();
+		event.resolutionTime = mResolutionTime.sumThenReset();
+		event.commit();
+	}
+}
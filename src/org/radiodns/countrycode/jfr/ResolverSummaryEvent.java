@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded periodically with the totals of all resolutions since the previous
+ * summary
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+@Name("org.radiodns.countrycode.ResolverSummary")
+@Label("Resolver Summary")
+@Category({ "RadioDNS", "Country Code Resolver" })
+@Description("Resolutions performed since the previous summary")
+@Period("10 s")
+@StackTrace(false)
+final class ResolverSummaryEvent extends jdk.jfr.Event {
+
+	@Label("Resolutions")
+	long resolutions;
+
+	@Label("Failures")
+	long failures;
+
+	@Label("ECC Resolutions")
+	long eccResolutions;
+
+	@Label("Country Resolutions")
+	long countryResolutions;
+
+	@Label("Nearby Country Resolutions")
+	long nearbyCountryResolutions;
+
+	@Label("MCC Resolutions")
+	long mccResolutions;
+
+	@Label("Total Resolution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long resolutionTime;
+}
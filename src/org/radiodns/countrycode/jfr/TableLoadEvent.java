@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package org.radiodns.countrycode.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded when a Resolver loads its lookup table
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+@Name("org.radiodns.countrycode.TableLoad")
+@Label("Country Table Load")
+@Category({ "RadioDNS", "Country Code Resolver" })
+@Description("Lookup table loaded by a Resolver")
+@StackTrace(true)
+final class TableLoadEvent extends jdk.jfr.Event {
+
+	@Label("Countries")
+	int countries;
+
+	@Label("Load Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long loadTime;
+}
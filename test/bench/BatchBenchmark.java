@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package bench;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.radiodns.countrycode.BatchResolver;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+
+/**
+ * Compares resolving a large batch of (location, service identifier) pairs
+ * one at a time through the Resolver against the compiled BatchResolver, with
+ * its scalar loop and, where available, its Vector API kernel, reporting the
+ * speedup of each batch path.
+ * 
+ * Usage: java [--add-modules jdk.incubator.vector] bench.BatchBenchmark
+ * [batch size] [rounds]
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class BatchBenchmark {
+
+	private static final String[] COUNTRIES = { "GB", "IE", "FR", "DE", "CH", "AT", "IT", "US",
+			"ES", "NL", "BE", "PL", "SE", "NO", "DK", "FI" };
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		Resolver resolver = new Resolver();
+		BatchResolver scalarBatch = new BatchResolver(resolver.getCountryTable(), false);
+		BatchResolver vectorBatch = new BatchResolver(resolver.getCountryTable(), true);
+
+		Random random = new Random(42);
+		String[] isoCodes = new String[size];
+		String[] countryIds = new String[size];
+		int[] locations = new int[size];
+		int[] serviceIds = new int[size];
+		for (int i = 0; i < size; i++) {
+			isoCodes[i] = COUNTRIES[random.nextInt(COUNTRIES.length)];
+			serviceIds[i] = random.nextInt(0x10000);
+			countryIds[i] = Integer.toHexString(serviceIds[i] >>> 12);
+			locations[i] = BatchResolver.isoCountryIndex(isoCodes[i]);
+		}
+		int[] gccs = new int[size];
+
+		System.out.println(String.format("%d elements per batch, %d rounds%n", size, rounds));
+		System.out.println(String.format("%-36s %16s", "path", "elements/s"));
+
+		// warm up every path before measuring
+		perElement(resolver, isoCodes, countryIds, rounds);
+		batched(scalarBatch, locations, serviceIds, gccs, rounds);
+		batched(vectorBatch, locations, serviceIds, gccs, rounds);
+
+		double single = perElement(resolver, isoCodes, countryIds, rounds);
+		System.out.println(String.format(Locale.ENGLISH, "%-36s %16.0f",
+				"Resolver.resolveGCCWithCountryCode", single));
+
+		double scalar = batched(scalarBatch, locations, serviceIds, gccs, rounds);
+		System.out.println(String.format(Locale.ENGLISH, "%-36s %16.0f  %.1fx",
+				"BatchResolver, scalar loop", scalar, scalar / single));
+
+		if (vectorBatch.isVectorised()) {
+			double vector = batched(vectorBatch, locations, serviceIds, gccs, rounds);
+			System.out.println(String.format(Locale.ENGLISH, "%-36s %16.0f  %.1fx",
+					"BatchResolver, Vector API kernel", vector, vector / single));
+			System.out.println(String.format(Locale.ENGLISH, "%nVector API kernel %.2fx the scalar loop",
+					vector / scalar));
+		} else {
+			System.out.println(String.format("%nVector API kernel unavailable, run with --add-modules jdk.incubator.vector"));
+		}
+	}
+
+	private static double perElement(Resolver resolver, String[] isoCodes, String[] countryIds,
+			int rounds) {
+		long start = System.nanoTime();
+		int resolved = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int i = 0; i < isoCodes.length; i++) {
+				try {
+					resolved += resolver.resolveGCCWithCountryCode(isoCodes[i], countryIds[i]).size();
+				} catch (ResolutionException e) {
+					// unresolvable combinations are part of the workload
+				}
+			}
+		}
+		return rate(isoCodes.length, rounds, start, resolved);
+	}
+
+	private static double batched(BatchResolver batch, int[] locations, int[] serviceIds,
+			int[] gccs, int rounds) {
+		long start = System.nanoTime();
+		int resolved = 0;
+		for (int r = 0; r < rounds; r++) {
+			batch.resolveWithCountryCode(locations, serviceIds, gccs, 0, locations.length);
+			resolved += gccs[r % gccs.length];
+		}
+		return rate(locations.length, rounds, start, resolved);
+	}
+
+	private static double rate(int size, int rounds, long start, int sink) {
+		long elapsed = System.nanoTime() - start;
+		// keep the results live so the work is not optimised away
+		if (sink == Integer.MIN_VALUE) {
+			System.out.println(sink);
+		}
+		return (double) size * rounds * 1e9 / elapsed;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package bench;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import org.radiodns.countrycode.ResolutionGateway;
+import org.radiodns.countrycode.Resolver;
+
+/**
+ * Loopback load test for the ResolutionGateway: client threads keep a window
+ * of requests in flight against a gateway on the same host, reporting the
+ * datagrams and queries answered per second, and the datagrams lost, for a
+ * range of queries per datagram.
+ * 
+ * Usage: java bench.GatewayBenchmark [seconds per run] [client threads] [window]
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class GatewayBenchmark {
+
+	private static final String[] COUNTRIES = { "GB", "IE", "FR", "DE", "CH", "AT", "IT", "US" };
+
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int window = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+		ResolutionGateway gateway = new ResolutionGateway(new Resolver(), new InetSocketAddress(
+				InetAddress.getByName("127.0.0.1"), 0));
+		Thread server = new Thread(gateway, "ResolutionGateway");
+		server.start();
+
+		System.out.println(String.format("%d clients, window of %d, %d s per run%n", clients,
+				window, seconds));
+		System.out.println(String.format("%8s %16s %16s %10s", "queries", "datagrams/s",
+				"queries/s", "lost"));
+
+		// warm up
+		measure(gateway, 1, clients, window, seconds);
+
+		for (int queries : new int[] { 1, 8, 32, ResolutionGateway.MAX_QUERIES }) {
+			measure(gateway, queries, clients, window, seconds);
+		}
+
+		gateway.close();
+		server.join();
+	}
+
+	private static void measure(final ResolutionGateway gateway, final int queries, int clients,
+			final int window, long seconds) throws InterruptedException {
+		final long[] answered = new long[clients];
+		final long[] lost = new long[clients];
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		Thread[] workers = new Thread[clients];
+
+		for (int c = 0; c < clients; c++) {
+			final int client = c;
+			workers[c] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						DatagramSocket socket = new DatagramSocket();
+						socket.setSoTimeout(100);
+						socket.connect(gateway.getLocalAddress());
+						DatagramPacket request = new DatagramPacket(request(client, queries),
+								ResolutionGateway.HEADER_SIZE + queries
+										* ResolutionGateway.QUERY_SIZE);
+						byte[] buffer = new byte[ResolutionGateway.HEADER_SIZE
+								+ ResolutionGateway.MAX_QUERIES * ResolutionGateway.ANSWER_SIZE];
+						DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+
+						start.await();
+						while (System.nanoTime() < deadline[0]) {
+							for (int i = 0; i < window; i++) {
+								socket.send(request);
+							}
+							for (int i = 0; i < window; i++) {
+								try {
+									socket.receive(response);
+									answered[client]++;
+								} catch (SocketTimeoutException e) {
+									lost[client] += window - i;
+									break;
+								}
+							}
+						}
+						socket.close();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			workers[c].start();
+		}
+
+		long begin = System.nanoTime();
+		deadline[0] = begin + seconds * 1000000000L;
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+
+		long totalAnswered = 0;
+		long totalLost = 0;
+		for (int c = 0; c < clients; c++) {
+			totalAnswered += answered[c];
+			totalLost += lost[c];
+		}
+		System.out.println(String.format(Locale.ENGLISH, "%8d %16.0f %16.0f %10d", queries,
+				totalAnswered / elapsed, totalAnswered * queries / elapsed, totalLost));
+	}
+
+	/**
+	 * Build a request resolving a mix of locations and PI Codes
+	 */
+	private static byte[] request(int client, int queries) {
+		ByteBuffer request = ByteBuffer.allocate(ResolutionGateway.HEADER_SIZE + queries
+				* ResolutionGateway.QUERY_SIZE);
+		request.put((byte) ResolutionGateway.VERSION).put((byte) queries).putShort((short) client);
+		for (int i = 0; i < queries; i++) {
+			String iso = COUNTRIES[(client + i) & 7];
+			request.put((byte) ResolutionGateway.LOCATION_ISO).put((byte) 0);
+			request.put((byte) iso.charAt(0)).put((byte) iso.charAt(1));
+			request.putInt(((i & 0xF) << 12) | 0x479);
+		}
+		return request.array();
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package bench;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.SessionStore;
+
+/**
+ * Measures resolution throughput against thread count for the shared
+ * resolution paths, reporting the scaling efficiency relative to a single
+ * thread. Efficiency well below 1.0 up to the number of cores points to lock
+ * contention or false sharing.
+ * 
+ * Usage: java bench.ScalingBenchmark [seconds per run] [max threads]
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ScalingBenchmark {
+
+	private static final String[] COUNTRIES = { "GB", "IE", "FR", "DE", "CH", "AT", "IT", "US" };
+	private static final String[] PI_CODES = { "C479", "2201", "F123", "D3A1", "4479", "A001", "5F01", "1234" };
+
+	/**
+	 * A unit of work executed repeatedly by each thread
+	 */
+	interface Workload {
+		void run(int thread, int iteration) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+		int cores = Runtime.getRuntime().availableProcessors();
+		final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : cores * 2;
+
+		final Resolver resolver = new Resolver();
+		final String[] countryIds = new String[PI_CODES.length];
+		for (int i = 0; i < PI_CODES.length; i++) {
+			countryIds[i] = PI_CODES[i].substring(0, 1);
+		}
+
+		System.out.println(String.format("%d cores, %d s per run%n", cores, seconds));
+
+		run("Resolver.resolveGCCWithCountryCode (shared)", seconds, maxThreads, cores, new Workload() {
+			@Override
+			public void run(int thread, int iteration) {
+				int i = iteration & 7;
+				try {
+					resolver.resolveGCCWithCountryCode(COUNTRIES[i], countryIds[(i + thread) & 7]);
+				} catch (ResolutionException e) {
+					// unresolvable combinations are part of the workload
+				}
+			}
+		});
+
+		final SessionStore store = new SessionStore(resolver, 1 << 20, maxThreads);
+		run("SessionStore, disjoint sessions", seconds, maxThreads, cores, new Workload() {
+			@Override
+			public void run(int thread, int iteration) {
+				long session = ((long) thread << 32) | (iteration & 0xFFFF);
+				store.setIsoCountryCode(session, COUNTRIES[iteration & 7]);
+				store.setRdsPiCode(session, PI_CODES[(iteration >> 3) & 7]);
+				store.getPackedGCC(session);
+			}
+		});
+
+		run("SessionStore, shared hot session", seconds, maxThreads, cores, new Workload() {
+			@Override
+			public void run(int thread, int iteration) {
+				store.setRdsPiCode(-1, PI_CODES[iteration & 7]);
+				store.getPackedGCC(-1);
+			}
+		});
+	}
+
+	private static void run(String name, long seconds, int maxThreads, int cores,
+			Workload workload) throws Exception {
+		System.out.println(name);
+		System.out.println(String.format("%8s %16s %10s", "threads", "ops/s", "efficiency"));
+
+		// warm up
+		measure(workload, 1, seconds);
+
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+			double throughput = measure(workload, threads, seconds);
+			if (threads == 1) {
+				single = throughput;
+			}
+			double efficiency = throughput / (single * Math.min(threads, cores));
+			System.out.println(String.format(Locale.ENGLISH, "%8d %16.0f %10.2f%s", threads,
+					throughput, efficiency,
+					threads <= cores && efficiency < 0.7 ? "  <- poor scaling" : ""));
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Run the workload on the given number of threads for the given time
+	 * 
+	 * @return double 	Total operations per second
+	 */
+	private static double measure(final Workload workload, int threads, long seconds)
+			throws InterruptedException {
+		// one counter per thread, padded onto separate cache lines so the
+		// benchmark itself does not introduce false sharing
+		final long[] counts = new long[(threads + 1) * 16];
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] end = new long[1];
+		Thread[] workers = new Thread[threads];
+
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						long deadline = end[0];
+						int iteration = 0;
+						while (true) {
+							for (int i = 0; i < 1024; i++) {
+								workload.run(thread, iteration++);
+							}
+							counts[(thread + 1) * 16] += 1024;
+							if (System.nanoTime() >= deadline) {
+								break;
+							}
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			workers[t].start();
+		}
+
+		long begin = System.nanoTime();
+		end[0] = begin + seconds * 1000000000L;
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		long total = 0;
+		for (int t = 0; t < threads; t++) {
+			total += counts[(t + 1) * 16];
+		}
+		return total * 1e9 / elapsed;
+	}
+}
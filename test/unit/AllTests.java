@@ -25,7 +25,13 @@ import org.junit.runners.Suite.SuiteClasses;
  * @version 1.0
  */
 @RunWith(Suite.class)
-@SuiteClasses({ ExceptionTests.class, ResolutionTests.class })
+@SuiteClasses({ ExceptionTests.class, ResolutionTests.class,
+		FicDecoderTests.class, TunerSessionTests.class,
+		SessionStoreTests.class, ResolverEventsTests.class, ConcurrencyTests.class,
+		CountryTableTests.class, IpPrefixTableTests.class, ResolutionMatrixTests.class,
+		MobileCountryCodeTests.class, CandidateIndexTests.class, DecisionTraceTests.class,
+		StationIndexTests.class, TableDiffTests.class, BatchResolverTests.class,
+		ResolutionGatewayTests.class, ReachabilityTests.class })
 public class AllTests {
 
 }
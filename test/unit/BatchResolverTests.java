@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.radiodns.countrycode.BatchResolver;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class BatchResolverTests {
+
+	/*
+	 * Every location and Country ID gives the first result of the Resolver
+	 */
+	@Test
+	public void testMatchesResolver() {
+		Resolver resolver = new Resolver();
+		BatchResolver batch = new BatchResolver(resolver.getCountryTable());
+
+		int[] locations = new int[26 * 26 * 16];
+		int[] serviceIds = new int[locations.length];
+		int[] gccs = new int[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = i >> 4;
+			serviceIds[i] = ((i & 0xF) << 12) | 0x479;
+		}
+		batch.resolveWithCountryCode(locations, serviceIds, gccs, 0, locations.length);
+
+		for (int i = 0; i < locations.length; i++) {
+			String iso = new String(new char[] { (char) ('A' + (i >> 4) / 26), (char) ('A' + (i >> 4) % 26) });
+			assertEquals(iso + " + " + Integer.toHexString(i & 0xF), expected(resolver, iso,
+					Integer.toHexString(i & 0xF)), gccs[i]);
+		}
+	}
+
+	@Test
+	public void testEcc() {
+		BatchResolver batch = new BatchResolver(new Resolver().getCountryTable());
+		int[] eccs = { 0xE1, 0xE1, 0xE3, 0x00 };
+		int[] serviceIds = { 0xC479, 0x4479, 0x2201, 0xC479 };
+		int[] gccs = new int[4];
+		batch.resolveWithEcc(eccs, serviceIds, gccs, 0, 4);
+		assertEquals(0xCE1, gccs[0]);
+		assertEquals(0x4E1, gccs[1]);
+		assertEquals(0x2E3, gccs[2]);
+		assertEquals(BatchResolver.UNRESOLVED, gccs[3]);
+	}
+
+	@Test
+	public void testMatchesResolverWithMcc() {
+		Resolver resolver = new Resolver();
+		BatchResolver batch = new BatchResolver(resolver.getCountryTable());
+
+		int[] mccs = new int[1000 * 16];
+		int[] serviceIds = new int[mccs.length];
+		int[] gccs = new int[mccs.length];
+		for (int i = 0; i < mccs.length; i++) {
+			mccs[i] = i >> 4;
+			serviceIds[i] = ((i & 0xF) << 12) | 0x479;
+		}
+		batch.resolveWithMcc(mccs, serviceIds, gccs, 0, mccs.length);
+
+		for (int i = 0; i < mccs.length; i++) {
+			String mcc = String.format("%03d", i >> 4);
+			int expected;
+			try {
+				expected = Integer.parseInt(resolver.resolveGCCWithMobileCountryCode(mcc,
+						Integer.toHexString(i & 0xF)).get(0).gcc, 16);
+			} catch (ResolutionException e) {
+				expected = BatchResolver.UNRESOLVED;
+			}
+			assertEquals(mcc + " + " + Integer.toHexString(i & 0xF), expected, gccs[i]);
+		}
+	}
+
+	@Test
+	public void testSingleLocationAndOffset() {
+		BatchResolver batch = new BatchResolver(new Resolver().getCountryTable());
+		int[] serviceIds = { 0xC479, 0xD001, 0x4479, 0xC201 };
+		int[] gccs = { 7, 7, 7, 7 };
+		batch.resolveWithCountryCode(BatchResolver.isoCountryIndex("CH"), serviceIds, gccs, 1, 2);
+		assertEquals(7, gccs[0]);
+		assertEquals(0xDE0, gccs[1]);
+		assertEquals(0x4E1, gccs[2]);
+		assertEquals(7, gccs[3]);
+
+		// an unknown location does not resolve
+		batch.resolveWithCountryCode(-1, serviceIds, gccs, 0, 4);
+		assertEquals(BatchResolver.UNRESOLVED, gccs[0]);
+	}
+
+	/*
+	 * Locations out of range do not resolve, rather than wrapping around to
+	 * another location
+	 */
+	@Test
+	public void testLocationsOutOfRange() {
+		BatchResolver batch = new BatchResolver(new Resolver().getCountryTable());
+		int gb = BatchResolver.isoCountryIndex("GB");
+		int[] locations = { gb, gb + 1024, gb - 1024, 26 * 26, Integer.MIN_VALUE | gb };
+		int[] serviceIds = { 0xC479, 0xC479, 0xC479, 0xC479, 0xC479 };
+		int[] gccs = new int[locations.length];
+		batch.resolveWithCountryCode(locations, serviceIds, gccs, 0, locations.length);
+		assertArrayEquals(new int[] { 0xCE1, BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED,
+				BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED }, gccs);
+
+		batch.resolveWithCountryCode(gb + 1024, serviceIds, gccs, 0, locations.length);
+		assertArrayEquals(new int[] { BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED,
+				BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED }, gccs);
+
+		int[] eccs = { 0xE1, 0xE1 + 256, 0xE1 - 256, 256, -1 };
+		batch.resolveWithEcc(eccs, serviceIds, gccs, 0, eccs.length);
+		assertArrayEquals(new int[] { 0xCE1, BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED,
+				BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED }, gccs);
+	}
+
+	/*
+	 * Mobile Country Codes above 999 do not resolve, rather than wrapping
+	 * around to another MCC
+	 */
+	@Test
+	public void testMccOutOfRange() {
+		BatchResolver batch = new BatchResolver(new Resolver().getCountryTable());
+		int[] mccs = { 234, 234 + 1024, 1000, 1023, -790 };
+		int[] serviceIds = { 0xC479, 0xC479, 0xC479, 0xC479, 0xC479 };
+		int[] gccs = new int[mccs.length];
+		batch.resolveWithMcc(mccs, serviceIds, gccs, 0, mccs.length);
+		assertArrayEquals(new int[] { 0xCE1, BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED,
+				BatchResolver.UNRESOLVED, BatchResolver.UNRESOLVED }, gccs);
+	}
+
+	/*
+	 * The kernel chosen at runtime gives the same results as the scalar loop,
+	 * including for elements after the last whole vector
+	 */
+	@Test
+	public void testKernelsAgree() {
+		CountryTable table = new Resolver().getCountryTable();
+		BatchResolver scalar = new BatchResolver(table, false);
+		BatchResolver chosen = new BatchResolver(table);
+		assertFalse(scalar.isVectorised());
+
+		Random random = new Random(1);
+		int[] locations = new int[1000];
+		int[] serviceIds = new int[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			// including locations far out of range, positive and negative
+			locations[i] = i % 4 == 0 ? random.nextInt() : random.nextInt(1024) - 1;
+			serviceIds[i] = random.nextInt();
+		}
+		for (int offset = 0; offset < 20; offset += 3) {
+			for (int length : new int[] { 0, 1, 7, 31, 500 }) {
+				int[] expected = new int[locations.length];
+				int[] actual = new int[locations.length];
+				scalar.resolveWithCountryCode(locations, serviceIds, expected, offset, length);
+				chosen.resolveWithCountryCode(locations, serviceIds, actual, offset, length);
+				assertArrayEquals(expected, actual);
+				scalar.resolveWithEcc(locations, serviceIds, expected, offset, length);
+				chosen.resolveWithEcc(locations, serviceIds, actual, offset, length);
+				assertArrayEquals(expected, actual);
+				scalar.resolveWithMcc(locations, serviceIds, expected, offset, length);
+				chosen.resolveWithMcc(locations, serviceIds, actual, offset, length);
+				assertArrayEquals(expected, actual);
+				scalar.resolveWithCountryCode(locations[offset], serviceIds, expected, offset, length);
+				chosen.resolveWithCountryCode(locations[offset], serviceIds, actual, offset, length);
+				assertArrayEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testBounds() {
+		new BatchResolver(new Resolver().getCountryTable()).resolveWithEcc(new int[2], new int[2],
+				new int[1], 0, 2);
+	}
+
+	private static int expected(Resolver resolver, String iso, String countryId) {
+		try {
+			List<Result> results = resolver.resolveGCCWithCountryCode(iso, countryId);
+			return Integer.parseInt(results.get(0).gcc, 16);
+		} catch (ResolutionException e) {
+			return BatchResolver.UNRESOLVED;
+		}
+	}
+}
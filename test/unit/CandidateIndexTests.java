@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.radiodns.countrycode.CandidateIndex;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class CandidateIndexTests {
+
+	/*
+	 * Without a location every country using the Country ID is a candidate,
+	 * with one candidate per GCC
+	 */
+	@Test
+	public void testCandidatesWithoutLocation() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setRdsPiCode("9201");
+		List<Result> candidates = resolver.resolveCandidates(100);
+		assertTrue(candidates.contains(new Result("9", "E1", "DK")));
+
+		Set<String> gccs = new HashSet<String>();
+		for (Result candidate : candidates) {
+			assertTrue(candidate.gcc.startsWith("9"));
+			assertTrue("Duplicate GCC " + candidate.gcc, gccs.add(candidate.gcc));
+		}
+	}
+
+	@Test
+	public void testMaxResults() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setDabSId("C201");
+		assertTrue(resolver.resolveCandidates(100).size() > 2);
+		assertEquals(2, resolver.resolveCandidates(2).size());
+		assertEquals(resolver.resolveCandidates(100).subList(0, 2), resolver.resolveCandidates(2));
+	}
+
+	@Test
+	public void testRegion() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		CandidateIndex index = new CandidateIndex.Builder(resolver.getCountryTable())
+				.includeCountry("gb")
+				.includeCountry("IE")
+				.build();
+		resolver.setRdsPiCode("2201");
+		assertEquals(1, resolver.resolveCandidates(index, 10).size());
+		assertEquals(new Result("2", "E3", "IE"), resolver.resolveCandidates(index, 10).get(0));
+
+		index = new CandidateIndex.Builder(resolver.getCountryTable()).includeEcc("E1").build();
+		for (Result candidate : index.getCandidates(0xC)) {
+			assertEquals("E1", candidate.ecc);
+		}
+	}
+
+	/*
+	 * Candidates are ordered by descending weight, then table order
+	 */
+	@Test
+	public void testWeights() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		CandidateIndex index = new CandidateIndex.Builder(resolver.getCountryTable())
+				.includeEcc("E1")
+				.includeEcc("E3")
+				.setWeight("HR", 2)
+				.setWeight("GB", 1)
+				.build();
+		resolver.setRdsPiCode("C479");
+		List<Result> candidates = resolver.resolveCandidates(index, 10);
+		assertEquals("HR", candidates.get(0).isoCountryCode);
+		assertEquals("GB", candidates.get(1).isoCountryCode);
+	}
+
+	/*
+	 * Changes made by one caller to its candidates are not seen by others
+	 */
+	@Test
+	public void testCandidatesAreCopied() {
+		CandidateIndex index = new Resolver().getCountryTable().getCandidateIndex();
+		List<Result> first = index.getCandidates(0xC);
+		String gcc = first.get(0).gcc;
+		first.get(0).gcc = "000";
+		first.clear();
+		assertEquals(gcc, index.getCandidates(0xC).get(0).gcc);
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testNoCandidates() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		CandidateIndex index = new CandidateIndex.Builder(resolver.getCountryTable())
+				.includeCountry("IE")
+				.build();
+		resolver.setRdsPiCode("C479");
+		resolver.resolveCandidates(index, 10);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCandidatesWithoutCountryId() throws ResolutionException {
+		new Resolver().resolveCandidates(10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxResults() {
+		new Resolver().getCountryTable().getCandidateIndex().getCandidates(0xC, 0);
+	}
+}
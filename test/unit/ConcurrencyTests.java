@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+import org.radiodns.countrycode.SessionStore;
+
+/**
+ * Stress tests which hammer shared resolution paths from several threads and
+ * check every answer against a single-threaded reference.
+ * 
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ConcurrencyTests {
+
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+	private static final String[] COUNTRIES = { "GB", "IE", "FR", "DE", "CH", "AT", "IT",
+			"US", "CA", "MX", "AU", "JE", "XX" };
+	private static final String HEX = "0123456789ABCDEF";
+
+	/*
+	 * A shared Resolver returns the same answers from every thread
+	 */
+	@Test
+	public void testSharedResolver() throws Exception {
+		final Resolver resolver = new Resolver();
+		final List<String> expected = resolveAll(resolver);
+
+		List<String> mismatches = runConcurrently(new Callable<List<String>>() {
+			@Override
+			public List<String> call() throws Exception {
+				List<String> mismatches = new ArrayList<String>();
+				for (int i = 0; i < 200; i++) {
+					List<String> actual = resolveAll(resolver);
+					if (!actual.equals(expected)) {
+						mismatches.add(actual.toString());
+					}
+				}
+				return mismatches;
+			}
+		});
+		assertTrue("Concurrent resolutions differ: " + mismatches, mismatches.isEmpty());
+	}
+
+	/*
+	 * Resolvers constructed concurrently load identical tables
+	 */
+	@Test
+	public void testConcurrentConstruction() throws Exception {
+		final List<String> expected = resolveAll(new Resolver());
+
+		List<String> mismatches = runConcurrently(new Callable<List<String>>() {
+			@Override
+			public List<String> call() throws Exception {
+				List<String> mismatches = new ArrayList<String>();
+				for (int i = 0; i < 10; i++) {
+					List<String> actual = resolveAll(new Resolver());
+					if (!actual.equals(expected)) {
+						mismatches.add(actual.toString());
+					}
+				}
+				return mismatches;
+			}
+		});
+		assertTrue("Concurrently loaded tables differ: " + mismatches, mismatches.isEmpty());
+	}
+
+	/*
+	 * Two actors racing to update the same session leave it in one of the two
+	 * complete states, never a mixture of both
+	 */
+	@Test
+	public void testSessionStoreRace() throws Exception {
+		final Resolver resolver = new Resolver();
+		for (int i = 0; i < 2000; i++) {
+			final SessionStore store = new SessionStore(resolver, 16, 1);
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread actor1 = new Thread() {
+				@Override
+				public void run() {
+					await(start);
+					store.setDabSId(1, "E1C47901");
+				}
+			};
+			Thread actor2 = new Thread() {
+				@Override
+				public void run() {
+					await(start);
+					store.setDabSId(1, "E0D12345");
+				}
+			};
+			actor1.start();
+			actor2.start();
+			start.countDown();
+			actor1.join();
+			actor2.join();
+
+			int gcc = store.getPackedGCC(1);
+			assertTrue("Torn session state: " + Integer.toHexString(gcc), gcc == 0xCE1 || gcc == 0xDE0);
+		}
+	}
+
+	/*
+	 * Sessions updated from many threads are all present and resolved
+	 */
+	@Test
+	public void testSessionStoreContention() throws Exception {
+		final SessionStore store = new SessionStore(new Resolver(), 16, THREADS);
+		final int sessions = 5000;
+
+		List<String> mismatches = runConcurrently(new Callable<List<String>>() {
+			@Override
+			public List<String> call() throws Exception {
+				List<String> mismatches = new ArrayList<String>();
+				// every thread updates every session, forcing overlapping writes
+				for (long id = 0; id < sessions; id++) {
+					store.setIsoCountryCode(id, "CH");
+					store.setRdsPiCode(id, "D479");
+					int gcc = store.getPackedGCC(id);
+					if (gcc != 0xDE0 && gcc != SessionStore.UNRESOLVED) {
+						mismatches.add(Long.toString(id));
+					}
+				}
+				store.resolveAll();
+				return mismatches;
+			}
+		});
+		assertTrue("Sessions resolved incorrectly: " + mismatches, mismatches.isEmpty());
+		assertEquals(sessions, store.size());
+		for (long id = 0; id < sessions; id++) {
+			assertEquals(0xDE0, store.getPackedGCC(id));
+		}
+	}
+
+	/**
+	 * Resolve every combination of the test countries and Country IDs using
+	 * the thread-safe resolution methods
+	 */
+	static List<String> resolveAll(Resolver resolver) {
+		List<String> results = new ArrayList<String>();
+		for (String country : COUNTRIES) {
+			for (int i = 0; i < HEX.length(); i++) {
+				String countryId = HEX.substring(i, i + 1);
+				try {
+					StringBuilder gccs = new StringBuilder();
+					for (Result result : resolver.resolveGCCWithCountryCode(country, countryId)) {
+						gccs.append(result.gcc).append(result.isoCountryCode);
+					}
+					results.add(gccs.toString());
+				} catch (ResolutionException e) {
+					results.add("-");
+				}
+			}
+		}
+		for (int ecc = 0xA0; ecc <= 0xF4; ecc++) {
+			for (int i = 0; i < HEX.length(); i++) {
+				try {
+					results.add(resolver.resolveGCCWithECC(Integer.toHexString(ecc),
+							HEX.substring(i, i + 1)).get(0).isoCountryCode);
+				} catch (ResolutionException e) {
+					results.add("-");
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Run the task on all threads at once, returning the combined output
+	 */
+	private static List<String> runConcurrently(Callable<List<String>> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(task));
+			}
+			List<String> output = new ArrayList<String>();
+			for (Future<List<String>> future : futures) {
+				output.addAll(future.get());
+			}
+			return output;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
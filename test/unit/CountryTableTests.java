@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class CountryTableTests {
+
+	/*
+	 * An override layer fills in placeholder values without conflicts
+	 */
+	@Test
+	public void testOverridePlaceholder() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("operator", csv("American Samoa,AS,F2,4,\n"))
+				.build();
+		assertEquals("operator", table.getSource("AS"));
+		assertEquals(CountryTable.DEFAULT_LAYER, table.getSource("GB"));
+		assertEquals("F2", table.getCountry("AS").getECC());
+		assertEquals("Nearby countries must be inherited", 2,
+				table.getCountry("AS").getNearbyCountries().size());
+
+		Resolver resolver = new Resolver(table);
+		resolver.setIsoCountryCode("AS");
+		resolver.setRdsPiCode("4479");
+		assertEquals(new Result("4", "F2", "AS"), resolver.resolveGCC().get(0));
+
+		for (String conflict : table.getConflicts()) {
+			assertTrue("Placeholder must not conflict: " + conflict, !conflict.startsWith("operator"));
+		}
+	}
+
+	/*
+	 * Nearby countries prefixed with '+' extend the existing list
+	 */
+	@Test
+	public void testAppendNearbyCountries() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("long-range", csv(",IE,,,+F:NO;C:GB\n"))
+				.build();
+		assertEquals(2, table.getCountry("IE").getNearbyCountries().size());
+
+		Resolver resolver = new Resolver(table);
+		resolver.setIsoCountryCode("IE");
+		resolver.setRdsPiCode("F201");
+		List<Result> expectedResult = new ArrayList<Result>();
+		expectedResult.add(new Result("F", "E2", "NO"));
+		assertEquals(expectedResult, resolver.resolveGCC());
+
+		// the appended entries are sourced from the layer, the rest of the row
+		// from the bundled table
+		assertEquals(CountryTable.DEFAULT_LAYER, table.getSource("IE"));
+		assertEquals("long-range", table.getSource("IE", "F:NO"));
+		assertEquals(CountryTable.DEFAULT_LAYER, table.getSource("IE", "C:GB"));
+		assertEquals(null, table.getSource("IE", "D:DE"));
+	}
+
+	/*
+	 * A new country's nearby countries may be written as an appended list
+	 */
+	@Test
+	public void testAppendNearbyCountriesToNewCountry() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("test", csv("Testland,QZ,E1,C,+D:DE;F:FR\n"))
+				.build();
+		assertEquals(2, table.getCountry("QZ").getNearbyCountries().size());
+		assertEquals("D:DE", table.getCountry("QZ").getNearbyCountries().get(0));
+		assertEquals("test", table.getSource("QZ", "D:DE"));
+
+		Resolver resolver = new Resolver(table);
+		resolver.setIsoCountryCode("QZ");
+		resolver.setRdsPiCode("D201");
+		List<Result> expectedResult = new ArrayList<Result>();
+		expectedResult.add(new Result("D", "E0", "DE"));
+		assertEquals(expectedResult, resolver.resolveGCC());
+	}
+
+	/*
+	 * Replacing an existing value and claiming a used GCC are reported
+	 */
+	@Test
+	public void testConflicts() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("disputed", csv("Ireland,IE,E1,C,C:GB\nAtlantis,ZZ,E2,F,\n"))
+				.build();
+		int replaced = 0;
+		int claimed = 0;
+		for (String conflict : table.getConflicts()) {
+			if (conflict.startsWith("disputed: IE")) {
+				replaced++;
+			} else if (conflict.equals("FE2: GCC claimed by NO (countries.csv) and ZZ (disputed)")
+					|| conflict.equals("CE1: GCC claimed by IE (disputed) and GB (countries.csv)")) {
+				claimed++;
+			}
+		}
+		assertEquals("ECC and Country IDs replaced", 2, replaced);
+		assertEquals(2, claimed);
+		assertEquals("disputed", table.getSource("ZZ"));
+	}
+
+	/*
+	 * Rows without an ISO Country Code are rejected
+	 */
+	@Test(expected = IOException.class)
+	public void testInvalidLayer() throws IOException {
+		new CountryTable.Builder().addLayer("broken", csv("Nowhere,,E0,1,\n"));
+	}
+
+	private static InputStream csv(String content) {
+		return new ByteArrayInputStream(content.getBytes());
+	}
+}
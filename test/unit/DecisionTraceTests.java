@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.radiodns.countrycode.DecisionTrace;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.ResolutionListener;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class DecisionTraceTests {
+
+	@After
+	public void tearDown() {
+		Resolver.setDecisionTrace(null);
+	}
+
+	@Test
+	public void testTraceNearbyCountry() throws ResolutionException {
+		DecisionTrace trace = new DecisionTrace(16, 1);
+		Resolver.setDecisionTrace(trace);
+
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("CH");
+		resolver.setRdsPiCode("D479");
+		// the trace must not see changes made to the Results returned
+		List<Result> resultList = resolver.resolveGCC();
+		resultList.get(0).gcc = "ce1";
+
+		List<DecisionTrace.Decision> decisions = trace.getDecisions();
+		assertEquals(1, decisions.size());
+		DecisionTrace.Decision decision = decisions.get(0);
+		assertEquals("CH", decision.isoCountryCode);
+		assertNull(decision.ecc);
+		assertEquals("D", decision.broadcastCountryCode);
+		assertEquals(ResolutionListener.Path.NEARBY_COUNTRY, decision.path);
+		assertTrue(decision.considered.contains("D:DE"));
+		assertEquals("de0", decision.results.get(0).gcc);
+		assertNull(decision.failure);
+		assertTrue(decision.toString(), decision.toString().startsWith("#0 ISO CH + D: NEARBY_COUNTRY considered ["));
+		assertTrue(decision.toString(), decision.toString().endsWith("-> de0 DE"));
+	}
+
+	@Test
+	public void testTraceCountryAndFailure() {
+		DecisionTrace trace = new DecisionTrace(16, 1);
+		Resolver.setDecisionTrace(trace);
+
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("GB");
+		resolver.setRdsPiCode("C479");
+		try {
+			resolver.resolveGCC();
+			resolver.setExtendedCountryCode("00");
+			resolver.resolveGCC();
+		} catch (ResolutionException e) {
+			// expected for the second resolution
+		}
+
+		List<DecisionTrace.Decision> decisions = trace.getDecisions();
+		assertEquals(2, decisions.size());
+		assertEquals(ResolutionListener.Path.COUNTRY, decisions.get(0).path);
+		assertEquals(Arrays.asList("C"), decisions.get(0).considered);
+		assertEquals(ResolutionListener.Path.ECC, decisions.get(1).path);
+		assertTrue(decisions.get(1).results.isEmpty());
+		assertTrue(decisions.get(1).failure != null);
+	}
+
+	/*
+	 * The buffer keeps only the latest decisions
+	 */
+	@Test
+	public void testCapacity() throws ResolutionException {
+		DecisionTrace trace = new DecisionTrace(3, 1);
+		assertEquals(4, trace.getCapacity());
+		Resolver.setDecisionTrace(trace);
+
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("GB");
+		resolver.setRdsPiCode("C479");
+		for (int i = 0; i < 20; i++) {
+			resolver.resolveGCC();
+		}
+
+		List<DecisionTrace.Decision> decisions = trace.getDecisions();
+		assertEquals(4, decisions.size());
+		assertEquals(16, decisions.get(0).sequence);
+		assertEquals(19, decisions.get(3).sequence);
+
+		trace.clear();
+		assertTrue(trace.getDecisions().isEmpty());
+	}
+
+	/*
+	 * About one resolution in each sample interval is recorded
+	 */
+	@Test
+	public void testSampling() throws ResolutionException {
+		DecisionTrace trace = new DecisionTrace(1, 4);
+		Resolver.setDecisionTrace(trace);
+
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("GB");
+		resolver.setRdsPiCode("C479");
+		for (int i = 0; i < 4000; i++) {
+			resolver.resolveGCC();
+		}
+
+		// sequence numbers count the decisions recorded, expected 1000
+		long recorded = trace.getDecisions().get(0).sequence + 1;
+		assertTrue("Recorded " + recorded, recorded > 700 && recorded < 1300);
+	}
+
+	@Test
+	public void testTraceConcurrently() throws InterruptedException {
+		final DecisionTrace trace = new DecisionTrace(64, 1);
+		Resolver.setDecisionTrace(trace);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					Resolver resolver = new Resolver();
+					resolver.setIsoCountryCode("GB");
+					resolver.setRdsPiCode("C479");
+					try {
+						for (int i = 0; i < 1000; i++) {
+							resolver.resolveGCC();
+						}
+					} catch (ResolutionException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		List<DecisionTrace.Decision> decisions = trace.getDecisions();
+		assertEquals(64, decisions.size());
+		assertEquals(3999, decisions.get(63).sequence);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSampleInterval() {
+		new DecisionTrace(16, 0);
+	}
+}
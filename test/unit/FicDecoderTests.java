@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.FicDecoder;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class FicDecoderTests {
+
+	private List<Integer> mServiceIds = new ArrayList<Integer>();
+	private List<Result> mResults = new ArrayList<Result>();
+
+	private FicDecoder.Listener mListener = new FicDecoder.Listener() {
+		@Override
+		public void onServiceResolved(int sId, Result result) {
+			mServiceIds.add(sId);
+			mResults.add(result);
+		}
+	};
+
+	/*
+	 * Services are resolved once both FIG 0/2 and FIG 0/9 have been received
+	 */
+	@Test
+	public void testResolveEnsemble() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+
+		// FIG 0/2 with two 16-bit SIds
+		decoder.decode(fib(new int[] { 0x0B, 0x02, 0xC4, 0x79, 0x01, 0x00, 0x00,
+				0xC4, 0x7A, 0x01, 0x00, 0x00 }));
+		assertEquals("Services must not resolve before the ECC is known", 0, mResults.size());
+		assertEquals(2, decoder.getServiceCount());
+
+		// FIG 0/9 with an ensemble ECC of E1
+		decoder.decode(fib(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 }));
+		assertEquals(0xE1, decoder.getEnsembleEcc());
+		assertEquals(2, mResults.size());
+		assertEquals(new Result("C", "E1", "GB"), mResults.get(0));
+		assertEquals(Integer.valueOf(0xC47A), mServiceIds.get(1));
+
+		// repetitions must not be notified again
+		decoder.decode(fib(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 }));
+		assertEquals(2, mResults.size());
+	}
+
+	/*
+	 * 32-bit SIds carry their own ECC
+	 */
+	@Test
+	public void testResolveLongFormSId() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+		decoder.decode(fib(new int[] { 0x06, 0x22, 0xE0, 0xD1, 0x23, 0x45, 0x00 }));
+		assertEquals(1, mResults.size());
+		assertEquals(new Result("D", "E0", "DE"), mResults.get(0));
+	}
+
+	/*
+	 * Services listed in the FIG 0/9 extended field use their own ECC
+	 */
+	@Test
+	public void testResolveEccOverride() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+		decoder.decode(fib(new int[] { 0x07, 0x02, 0xC4, 0x79, 0x00, 0xD1, 0x23, 0x00,
+				0x08, 0x09, 0x80, 0xE1, 0x00, 0x40, 0xE0, 0xD1, 0x23 }));
+		assertEquals(2, mResults.size());
+		assertEquals(new Result("C", "E1", "GB"), mResults.get(0));
+		assertEquals(new Result("D", "E0", "DE"), mResults.get(1));
+	}
+
+	/*
+	 * FIBs failing the CRC check are discarded and partial FIBs are retained
+	 */
+	@Test
+	public void testCorruptAndPartialFibs() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+		ByteBuffer corrupt = fib(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 });
+		corrupt.put(5, (byte) 0x55);
+		decoder.decode(corrupt);
+		assertEquals(-1, decoder.getEnsembleEcc());
+
+		ByteBuffer partial = ByteBuffer.allocate(FicDecoder.FIB_LENGTH + 10);
+		partial.put(fib(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 }));
+		partial.flip();
+		partial.limit(partial.limit() + 10);
+		assertEquals(1, decoder.decode(partial));
+		assertEquals(10, partial.remaining());
+		assertTrue(decoder.getEnsembleEcc() == 0xE1);
+	}
+
+	/*
+	 * Fixed FIBs whose CRC was calculated independently of the decoder, from
+	 * the EN 300 401 generator polynomial x^16 + x^12 + x^5 + 1 with the
+	 * register preset to ones and the result inverted (check value 0xD64E
+	 * for "123456789")
+	 */
+	@Test
+	public void testReferenceCrc() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+		decoder.decode(bytes(new int[] { 0x06, 0x22, 0xE0, 0xD1, 0x23, 0x45, 0x00 }, 0xB041));
+		assertEquals(1, mResults.size());
+		assertEquals(new Result("D", "E0", "DE"), mResults.get(0));
+
+		decoder.decode(bytes(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 }, 0xEFA3));
+		assertEquals(0xE1, decoder.getEnsembleEcc());
+
+		// the CRC is transmitted most significant byte first
+		decoder.reset();
+		decoder.decode(bytes(new int[] { 0x04, 0x09, 0x00, 0xE1, 0x00 }, 0xA3EF));
+		assertEquals(-1, decoder.getEnsembleEcc());
+	}
+
+	/*
+	 * SIds and the CRC are big-endian whatever the byte order of the buffer
+	 */
+	@Test
+	public void testLittleEndianBuffer() {
+		FicDecoder decoder = new FicDecoder(new Resolver(), mListener);
+		ByteBuffer fic = fib(new int[] { 0x06, 0x22, 0xE0, 0xD1, 0x23, 0x45, 0x00 });
+		fic.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(1, decoder.decode(fic));
+		assertEquals(0, fic.remaining());
+		assertEquals(ByteOrder.LITTLE_ENDIAN, fic.order());
+		assertEquals(1, mResults.size());
+		assertEquals(Integer.valueOf(0xE0D12345), mServiceIds.get(0));
+		assertEquals(new Result("D", "E0", "DE"), mResults.get(0));
+	}
+
+	/**
+	 * Build a FIB containing the given FIG data, padded, followed by the given
+	 * CRC
+	 */
+	private static ByteBuffer bytes(int[] figs, int crc) {
+		ByteBuffer fib = ByteBuffer.allocate(FicDecoder.FIB_LENGTH);
+		for (int i = 0; i < 30; i++) {
+			fib.put((byte) (i < figs.length ? figs[i] : 0xFF));
+		}
+		fib.put((byte) (crc >> 8));
+		fib.put((byte) crc);
+		fib.flip();
+		return fib;
+	}
+
+	/**
+	 * Build a FIB containing the given FIG data, padded and with a valid CRC
+	 */
+	private static ByteBuffer fib(int[] figs) {
+		ByteBuffer fib = ByteBuffer.allocate(FicDecoder.FIB_LENGTH);
+		for (int i = 0; i < 30; i++) {
+			fib.put((byte) (i < figs.length ? figs[i] : 0xFF));
+		}
+		int crc = 0xFFFF;
+		for (int i = 0; i < 30; i++) {
+			crc ^= (fib.get(i) & 0xFF) << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+		}
+		fib.putShort((short) ~crc);
+		fib.flip();
+		return fib;
+	}
+}
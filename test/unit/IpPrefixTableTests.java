@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.junit.Test;
+import org.radiodns.countrycode.IpPrefixTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class IpPrefixTableTests {
+
+	private static final String PREFIXES = "# test prefixes\n"
+			+ "81.0.0.0/8,GB\n"
+			+ "81.2.69.0/24,IE\n"
+			+ "81.2.69.128/25,GB\n"
+			+ "2.16.0.0/13,CH\n"
+			+ "2a02:c7f::/32,GB\n"
+			+ "2a02:c7f:1234::/48,DE\n";
+
+	/*
+	 * The most specific matching prefix wins
+	 */
+	@Test
+	public void testLookup() throws IOException {
+		IpPrefixTable table = compile(PREFIXES);
+		assertEquals("GB", table.lookup(InetAddress.getByName("81.200.1.1")));
+		assertEquals("IE", table.lookup(InetAddress.getByName("81.2.69.1")));
+		assertEquals("GB", table.lookup(InetAddress.getByName("81.2.69.200")));
+		assertEquals("CH", table.lookup(InetAddress.getByName("2.23.255.255")));
+		assertNull(table.lookup(InetAddress.getByName("2.24.0.0")));
+		assertNull(table.lookup(InetAddress.getByName("10.0.0.1")));
+		assertEquals("IE", table.lookup(0x51024501));
+	}
+
+	@Test
+	public void testLookupIpv6() throws IOException {
+		IpPrefixTable table = compile(PREFIXES);
+		assertEquals("GB", table.lookup(InetAddress.getByName("2a02:c7f:ffff::1")));
+		assertEquals("DE", table.lookup(InetAddress.getByName("2a02:c7f:1234:5678::1")));
+		assertNull(table.lookup(InetAddress.getByName("2001:db8::1")));
+
+		// IPv4-mapped addresses use the IPv4 prefixes
+		byte[] mapped = new byte[16];
+		mapped[10] = (byte) 0xFF;
+		mapped[11] = (byte) 0xFF;
+		mapped[12] = 81;
+		mapped[13] = 2;
+		mapped[14] = 69;
+		mapped[15] = 1;
+		assertEquals("IE", table.lookup(mapped));
+	}
+
+	/*
+	 * The country found feeds into nearby country resolution
+	 */
+	@Test
+	public void testResolveWithIpAddress() throws IOException, ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setIpAddress(InetAddress.getByName("2.16.1.1"), compile(PREFIXES));
+		resolver.setRdsPiCode("D479");
+		assertEquals(new Result("D", "E0", "DE"), resolver.resolveGCC().get(0));
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testUnknownIpAddress() throws IOException, ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setIpAddress(InetAddress.getByName("10.0.0.1"), compile(PREFIXES));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidPrefix() throws IOException {
+		compile("81.0.0.0/33,GB\n");
+	}
+
+	/*
+	 * Prefixes must be address literals; hostnames, including those made only
+	 * of hexadecimal letters, are rejected without a DNS lookup
+	 */
+	@Test
+	public void testHostnamePrefixes() {
+		String[] invalid = { "beef/16", "cafe.face/16", "dead.beef/16", "example.com/8",
+				"81.2.69/24", "81.2.69.256/32", "81.2.69.1.5/32", "1.2.3.04444/32",
+				"2a02:::1/48", "2a02::c7f::1/48", "2a02:c7f/32", "2a02:c7f:12345::/48",
+				"1:2:3:4:5:6:7:8:9/64", "1:2:3:4:5:6:7::8/64", "2a02:c7f:/32", "::1.2.3/96" };
+		for (String prefix : invalid) {
+			try {
+				compile(prefix + ",GB\n");
+				fail("Prefix must be rejected: " + prefix);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	/*
+	 * The forms of IPv6 literal, including an embedded IPv4 address
+	 */
+	@Test
+	public void testIpv6Literals() throws IOException {
+		IpPrefixTable table = compile("::/0,FR\n"
+				+ "2a02:c7f:0:0:0:0:0:0/32,GB\n"
+				+ "2a02:c7f:1234::1:0/112,DE\n"
+				+ "::ffff:81.2.69.0/24,IE\n"
+				+ "64:ff9b::81.2.69.0/120,CH\n");
+		assertEquals("GB", table.lookup(InetAddress.getByName("2a02:c7f:ffff::1")));
+		assertEquals("DE", table.lookup(InetAddress.getByName("2a02:c7f:1234::1:5")));
+		assertEquals("GB", table.lookup(InetAddress.getByName("2a02:c7f:1234::2:5")));
+		assertEquals("FR", table.lookup(InetAddress.getByName("2a02:c7e::1")));
+		assertEquals("IE", table.lookup(InetAddress.getByName("81.2.69.1")));
+		assertEquals("CH", table.lookup(InetAddress.getByName("64:ff9b::5102:4501")));
+	}
+
+	private static IpPrefixTable compile(String prefixes) throws IOException {
+		File file = File.createTempFile("prefixes", ".bin");
+		file.deleteOnExit();
+		IpPrefixTable.compile(new ByteArrayInputStream(prefixes.getBytes()), file);
+		return IpPrefixTable.open(file);
+	}
+}
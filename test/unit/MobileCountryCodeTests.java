@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class MobileCountryCodeTests {
+
+	@Test
+	public void testMobileCountryCode() throws ResolutionException {
+		List<Result> expectedResult = new ArrayList<Result>();
+		expectedResult.add(new Result("C", "E1", "GB"));
+
+		Resolver resolver = new Resolver();
+		resolver.setMobileCountryCode("234");
+		resolver.setRdsPiCode("C479");
+		assertEquals("234 + C479 must return one result of ce1", expectedResult, resolver.resolveGCC());
+	}
+
+	/*
+	 * Countries sharing an MCC contribute their matches once each, those of
+	 * the primary country first
+	 */
+	@Test
+	public void testSharedMobileCountryCode() throws ResolutionException {
+		List<Result> expectedResult = new ArrayList<Result>();
+		expectedResult.add(new Result("3", "E0", "AD"));
+		expectedResult.add(new Result("3", "D3", "EH"));
+
+		Resolver resolver = new Resolver();
+		resolver.setMobileCountryCode("214");
+		resolver.setRdsPiCode("3201");
+		assertEquals("214 + 3201 must return 3e0 and 3d3", expectedResult, resolver.resolveGCC());
+
+		// Guernsey, Jersey and the Isle of Man share 234 and all neighbour France
+		expectedResult.clear();
+		expectedResult.add(new Result("F", "E1", "FR"));
+		assertEquals(expectedResult, resolver.resolveGCCWithMobileCountryCode("234", "F"));
+	}
+
+	/*
+	 * The last location input set is the one used
+	 */
+	@Test
+	public void testLocationInputsReplaceEachOther() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setRdsPiCode("C479");
+		resolver.setIsoCountryCode("IE");
+		resolver.setMobileCountryCode("234");
+		assertEquals("GB", resolver.resolveGCC().get(0).isoCountryCode);
+		resolver.setExtendedCountryCode("E3");
+		assertEquals("HR", resolver.resolveGCC().get(0).isoCountryCode);
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testUnknownMobileCountryCode() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setMobileCountryCode("001");
+		resolver.setRdsPiCode("C479");
+		resolver.resolveGCC();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMobileCountryCode() {
+		new Resolver().setMobileCountryCode("23A");
+	}
+
+	/*
+	 * MCC layers replace or append to the countries of an MCC
+	 */
+	@Test
+	public void testMccLayer() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addMccLayer("operator", new ByteArrayInputStream("235,IE\n242,+GB\n".getBytes()))
+				.build();
+		assertTrue(table.getConflicts().contains("operator: MCC 235 'GB' from mcc.csv replaced by 'IE'"));
+
+		Resolver resolver = new Resolver(table);
+		assertEquals("IE", resolver.resolveGCCWithMobileCountryCode("235", "2").get(0).isoCountryCode);
+		assertEquals("GB", resolver.resolveGCCWithMobileCountryCode("242", "C").get(0).isoCountryCode);
+		assertEquals(1, resolver.resolveGCCWithMobileCountryCode("242", "C").size());
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testTableWithoutMccLayer() throws IOException, ResolutionException {
+		CountryTable table = new CountryTable.Builder()
+				.addLayer(CountryTable.DEFAULT_LAYER, CountryTable.class.getResourceAsStream(CountryTable.DEFAULT_LAYER))
+				.build();
+		new Resolver(table).resolveGCCWithMobileCountryCode("234", "C");
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.Country;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ReachabilityTests {
+
+	// a chain AA - BB - CC - DD, where AA and DD share Country ID 1
+	private static final String CHAIN = "Aland,AA,E0,1,2:BB\n"
+			+ "Bland,BB,E1,2,1:AA;3:CC\n"
+			+ "Cland,CC,E2,3,2:BB;1:DD\n"
+			+ "Dland,DD,E3,1,3:CC\n";
+
+	/*
+	 * Results are ordered by hop distance, the reported country first
+	 */
+	@Test
+	public void testOrderedByHops() throws IOException, ResolutionException {
+		Resolver resolver = new Resolver(chain(3));
+		assertEquals(isos("AA"), isos(resolver.resolveGCCWithCountryCode("AA", "1", 0)));
+		assertEquals(isos("AA"), isos(resolver.resolveGCCWithCountryCode("AA", "1", 2)));
+		assertEquals(isos("AA", "DD"), isos(resolver.resolveGCCWithCountryCode("AA", "1", 3)));
+		assertEquals(isos("DD", "AA"), isos(resolver.resolveGCCWithCountryCode("dd", "1", 3)));
+		assertEquals(new Result("1", "E3", "DD"), resolver.resolveGCCWithCountryCode("AA", "1", 3).get(1));
+	}
+
+	/*
+	 * Widening the search reaches countries further away
+	 */
+	@Test
+	public void testWidening() throws IOException, ResolutionException {
+		Resolver resolver = new Resolver(chain(3));
+		try {
+			resolver.resolveGCCWithCountryCode("AA", "3", 1);
+			fail("CC is two hops from AA");
+		} catch (ResolutionException e) {
+			// expected
+		}
+		assertEquals(isos("CC"), isos(resolver.resolveGCCWithCountryCode("AA", "3", 2)));
+
+		// Germany is two hops from Ireland in the bundled table
+		Resolver defaultResolver = new Resolver();
+		assertEquals(isos("DE"), isos(defaultResolver.resolveGCCWithCountryCode("IE", "D", 2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBeyondMaxHops() throws IOException, ResolutionException {
+		new Resolver(chain(2)).resolveGCCWithCountryCode("AA", "1", 3);
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testUnknownCountry() throws IOException, ResolutionException {
+		new Resolver(chain(2)).resolveGCCWithCountryCode("ZZ", "1", 1);
+	}
+
+	@Test
+	public void testDefaultMaxHops() {
+		assertEquals(CountryTable.DEFAULT_MAX_HOPS, new Resolver().getCountryTable().getMaxHops());
+	}
+
+	/*
+	 * A single hop finds at least the countries found by
+	 * resolveGCCWithCountryCode(), the reported country first
+	 */
+	@Test
+	public void testSingleHopIncludesNearbyCountries() throws ResolutionException {
+		Resolver resolver = new Resolver();
+		for (Country country : resolver.getCountryTable().getCountries()) {
+			for (int countryId = 0; countryId < 16; countryId++) {
+				String broadcastCountryCode = Integer.toHexString(countryId);
+				List<String> nearby;
+				try {
+					nearby = isos(resolver.resolveGCCWithCountryCode(country.getISOCountryCode(),
+							broadcastCountryCode));
+				} catch (ResolutionException e) {
+					continue;
+				}
+				List<String> hops = isos(resolver.resolveGCCWithCountryCode(
+						country.getISOCountryCode(), broadcastCountryCode, 1));
+				assertTrue(country.getISOCountryCode() + " + " + broadcastCountryCode + ": " + hops,
+						hops.containsAll(nearby));
+				if (nearby.get(0).equals(country.getISOCountryCode())) {
+					assertEquals(nearby.get(0), hops.get(0));
+				}
+			}
+		}
+	}
+
+	private static CountryTable chain(int maxHops) throws IOException {
+		return new CountryTable.Builder()
+				.addLayer("chain", new ByteArrayInputStream(CHAIN.getBytes()))
+				.setMaxHops(maxHops)
+				.build();
+	}
+
+	private static List<String> isos(String... isoCountryCodes) {
+		List<String> result = new ArrayList<String>();
+		for (String isoCountryCode : isoCountryCodes) {
+			result.add(isoCountryCode);
+		}
+		return result;
+	}
+
+	private static List<String> isos(List<Result> results) {
+		List<String> result = new ArrayList<String>();
+		for (Result r : results) {
+			result.add(r.isoCountryCode);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionGateway;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.TablePublisher;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ResolutionGatewayTests {
+
+	private TablePublisher mPublisher;
+	private ResolutionGateway mGateway;
+	private DatagramSocket mClient;
+
+	@Before
+	public void setUp() throws IOException {
+		mPublisher = new TablePublisher(CountryTable.load());
+		mGateway = new ResolutionGateway(new Resolver(mPublisher.getTable()),
+				new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+		mPublisher.addListener(mGateway);
+		new Thread(mGateway, "ResolutionGateway").start();
+
+		mClient = new DatagramSocket();
+		mClient.setSoTimeout(2000);
+		mClient.connect(mGateway.getLocalAddress());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		mClient.close();
+		mGateway.close();
+	}
+
+	/*
+	 * Each location type resolves, answered in order with the tag echoed
+	 */
+	@Test
+	public void testResolve() throws IOException {
+		ByteBuffer request = request(0x1234, 9);
+		query(request, ResolutionGateway.LOCATION_ISO, ('G' << 8) | 'B', 0xC479);
+		query(request, ResolutionGateway.LOCATION_ISO, ('c' << 8) | 'h', 0xD479);
+		query(request, ResolutionGateway.LOCATION_ECC, 0xE1, 0xC479);
+		query(request, ResolutionGateway.LOCATION_MCC, 234, 0xC479);
+		query(request, ResolutionGateway.LOCATION_NONE, 0, 0xE1C12345);
+		query(request, ResolutionGateway.LOCATION_ISO, ('Z' << 8) | 'Z', 0xC479);
+		query(request, ResolutionGateway.LOCATION_NONE, 0, 0xC479);
+		// out of range, rather than wrapping around to MCC 234 and ECC E1
+		query(request, ResolutionGateway.LOCATION_MCC, 234 + 1024, 0xC479);
+		query(request, ResolutionGateway.LOCATION_ECC, 0xE1 + 256, 0xC479);
+
+		ByteBuffer response = send(request);
+		assertEquals(ResolutionGateway.HEADER_SIZE + 9 * ResolutionGateway.ANSWER_SIZE,
+				response.remaining());
+		assertEquals(ResolutionGateway.VERSION, response.get());
+		assertEquals(9, response.get());
+		assertEquals(0x1234, response.getShort());
+		assertEquals(0xCE1, response.getShort());
+		assertEquals(0xDE0, response.getShort());
+		assertEquals(0xCE1, response.getShort());
+		assertEquals(0xCE1, response.getShort());
+		assertEquals(0xCE1, response.getShort());
+		assertEquals(ResolutionGateway.UNRESOLVED_ANSWER, response.getShort() & 0xFFFF);
+		assertEquals(ResolutionGateway.UNRESOLVED_ANSWER, response.getShort() & 0xFFFF);
+		assertEquals(ResolutionGateway.UNRESOLVED_ANSWER, response.getShort() & 0xFFFF);
+		assertEquals(ResolutionGateway.UNRESOLVED_ANSWER, response.getShort() & 0xFFFF);
+		assertEquals(9, mGateway.getQueryCount());
+	}
+
+	/*
+	 * Malformed datagrams are dropped without a response
+	 */
+	@Test
+	public void testMalformed() throws IOException {
+		ByteBuffer wrongVersion = request(1, 1);
+		wrongVersion.put(0, (byte) 2);
+		query(wrongVersion, ResolutionGateway.LOCATION_ISO, ('G' << 8) | 'B', 0xC479);
+		assertNoResponse(wrongVersion);
+
+		ByteBuffer wrongCount = request(1, 2);
+		query(wrongCount, ResolutionGateway.LOCATION_ISO, ('G' << 8) | 'B', 0xC479);
+		assertNoResponse(wrongCount);
+
+		ByteBuffer valid = request(2, 1);
+		query(valid, ResolutionGateway.LOCATION_ISO, ('G' << 8) | 'B', 0xC479);
+		assertEquals(2, send(valid).getShort(2));
+		assertEquals(2, mGateway.getDroppedCount());
+		assertEquals(1, mGateway.getRequestCount());
+	}
+
+	/*
+	 * A published table is used for later requests
+	 */
+	@Test
+	public void testTableChanged() throws IOException {
+		ByteBuffer request = request(1, 1);
+		query(request, ResolutionGateway.LOCATION_ISO, ('G' << 8) | 'B', 0xC479);
+		assertEquals(0xCE1, send(request).getShort(ResolutionGateway.HEADER_SIZE));
+
+		mPublisher.publish(new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("update", new ByteArrayInputStream("United Kingdom,GB,E2,,\n".getBytes()))
+				.build());
+		assertEquals(0xCE2, send(request).getShort(ResolutionGateway.HEADER_SIZE));
+	}
+
+	private static ByteBuffer request(int tag, int count) {
+		ByteBuffer request = ByteBuffer.allocate(ResolutionGateway.HEADER_SIZE + count
+				* ResolutionGateway.QUERY_SIZE);
+		request.put((byte) ResolutionGateway.VERSION).put((byte) count).putShort((short) tag);
+		return request;
+	}
+
+	private static void query(ByteBuffer request, int type, int location, int serviceId) {
+		request.put((byte) type).put((byte) 0).putShort((short) location).putInt(serviceId);
+	}
+
+	private ByteBuffer send(ByteBuffer request) throws IOException {
+		mClient.send(new DatagramPacket(request.array(), request.position()));
+		byte[] buffer = new byte[1024];
+		DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+		mClient.receive(response);
+		return ByteBuffer.wrap(buffer, 0, response.getLength());
+	}
+
+	private void assertNoResponse(ByteBuffer request) throws IOException {
+		mClient.setSoTimeout(200);
+		try {
+			send(request);
+			throw new AssertionError("Malformed request was answered");
+		} catch (SocketTimeoutException e) {
+			// expected
+		} finally {
+			mClient.setSoTimeout(2000);
+		}
+	}
+}
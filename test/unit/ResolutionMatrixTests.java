@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionMatrix;
+import org.radiodns.countrycode.Resolver;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ResolutionMatrixTests {
+
+	/*
+	 * An exported matrix gives the same answers as the Resolver it came from
+	 */
+	@Test
+	public void testVerifyCompatible() throws IOException {
+		Resolver resolver = new Resolver();
+		ResolutionMatrix matrix = new ResolutionMatrix(resolver.getCountryTable());
+		List<String> mismatches = ResolutionMatrix.verify(new ByteArrayInputStream(binary(matrix)), resolver);
+		assertTrue(mismatches.toString(), mismatches.isEmpty());
+	}
+
+	/*
+	 * A matrix exported from a different table is reported as incompatible
+	 */
+	@Test
+	public void testVerifyIncompatible() throws IOException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("operator", new ByteArrayInputStream("American Samoa,AS,F2,4,\n".getBytes()))
+				.build();
+		ResolutionMatrix matrix = new ResolutionMatrix(table);
+		List<String> mismatches = ResolutionMatrix.verify(new ByteArrayInputStream(binary(matrix)),
+				new Resolver());
+		assertEquals(1, mismatches.size());
+		assertEquals("AS + 4: expected [4f2/WS] but matrix has [4f2/AS]", mismatches.get(0));
+	}
+
+	@Test
+	public void testDigest() throws IOException {
+		CountryTable table = new Resolver().getCountryTable();
+		assertEquals(new ResolutionMatrix(table).getDigest(), new ResolutionMatrix(table).getDigest());
+
+		CountryTable override = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("operator", new ByteArrayInputStream("American Samoa,AS,F2,4,\n".getBytes()))
+				.build();
+		assertTrue(new ResolutionMatrix(table).getDigest() != new ResolutionMatrix(override).getDigest());
+	}
+
+	@Test
+	public void testJson() throws IOException {
+		StringWriter writer = new StringWriter();
+		new ResolutionMatrix(new Resolver().getCountryTable()).writeJson(writer);
+		String json = writer.toString();
+		assertTrue(json.startsWith("{\"format\":\"radiodns-gcc-matrix\",\"version\":1,"));
+		assertTrue(json.contains("\"GB\":{\"1\":[{\"gcc\":\"1e0\",\"iso\":\"DE\"}],\"2\":[{\"gcc\":\"2e3\",\"iso\":\"IE\"}]"));
+		assertTrue(json.contains("\"C\":[{\"gcc\":\"ce1\",\"iso\":\"GB\"}]"));
+		assertTrue(json.contains("\"E1\":{"));
+		assertTrue(json.endsWith("}}"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testVerifyNotMatrix() throws IOException {
+		ResolutionMatrix.verify(new ByteArrayInputStream(new byte[32]), new Resolver());
+	}
+
+	private static byte[] binary(ResolutionMatrix matrix) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		matrix.writeBinary(output);
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Test;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.jfr.ResolverEvents;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class ResolverEventsTests {
+
+	@After
+	public void tearDown() {
+		ResolverEvents.unregister();
+	}
+
+	/*
+	 * Table loads and resolutions are recorded while a recording is running
+	 */
+	@Test
+	public void testEventsRecorded() throws Exception {
+		ResolverEvents.register();
+		ResolverEvents.setSampleInterval(1);
+
+		File file = File.createTempFile("resolver", ".jfr");
+		file.deleteOnExit();
+		Recording recording = new Recording();
+		recording.enable("org.radiodns.countrycode.TableLoad");
+		recording.enable("org.radiodns.countrycode.Resolution");
+		recording.start();
+
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("CH");
+		resolver.setRdsPiCode("D479");
+		resolver.resolveGCC();
+		resolver.setRdsPiCode("B479");
+		try {
+			resolver.resolveGCC();
+		} catch (ResolutionException e) {
+			// expected, recorded as a failure
+		}
+		resolver.setMobileCountryCode("234");
+		resolver.setRdsPiCode("C479");
+		resolver.resolveGCC();
+
+		recording.stop();
+		recording.dump(file.toPath());
+		recording.close();
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+		int tableLoads = 0;
+		int resolutions = 0;
+		for (RecordedEvent event : events) {
+			String name = event.getEventType().getName();
+			if (name.equals("org.radiodns.countrycode.TableLoad")) {
+				tableLoads++;
+				assertTrue(event.getInt("countries") > 200);
+			} else if (name.equals("org.radiodns.countrycode.Resolution")) {
+				if (resolutions < 2) {
+					assertEquals("NEARBY_COUNTRY", event.getString("path"));
+					assertEquals("CH", event.getString("isoCountryCode"));
+					assertEquals(null, event.getString("mcc"));
+					assertEquals(resolutions == 0 ? 1 : 0, event.getInt("results"));
+				} else {
+					// the MCC is recorded in place of the ISO Country Code
+					assertEquals("MCC", event.getString("path"));
+					assertEquals(null, event.getString("isoCountryCode"));
+					assertEquals("234", event.getString("mcc"));
+					assertEquals(1, event.getInt("results"));
+				}
+				resolutions++;
+			}
+		}
+		assertEquals(1, tableLoads);
+		assertEquals(3, resolutions);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Result;
+import org.radiodns.countrycode.SessionStore;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class SessionStoreTests {
+
+	/*
+	 * Sessions resolve as their inputs are updated
+	 */
+	@Test
+	public void testResolveSessions() {
+		SessionStore store = new SessionStore(new Resolver());
+		store.setIsoCountryCode(1, "CH");
+		assertEquals(SessionStore.UNRESOLVED, store.getPackedGCC(1));
+		store.setRdsPiCode(1, "D479");
+		assertEquals(0xDE0, store.getPackedGCC(1));
+		assertEquals(new Result("D", "E0", "DE"), store.getResult(1));
+
+		store.setExtendedCountryCode(2, "e1");
+		store.setDabSId(2, "C479");
+		assertEquals(new Result("C", "E1", "GB"), store.getResult(2));
+
+		store.setIsoCountryCode(3, "GB");
+		store.setDabSId(3, "E0D12345");
+		assertEquals(new Result("D", "E0", "DE"), store.getResult(3));
+
+		assertEquals(3, store.size());
+		assertNull(store.getResult(4));
+	}
+
+	/*
+	 * Inputs which do not resolve leave the session unresolved
+	 */
+	@Test
+	public void testUnresolvedSession() {
+		SessionStore store = new SessionStore(new Resolver());
+		store.setIsoCountryCode(1, "CH");
+		store.setRdsPiCode(1, "B479");
+		assertEquals(SessionStore.UNRESOLVED, store.getPackedGCC(1));
+		assertEquals(0, store.getResultCount(1));
+
+		store.setIsoCountryCode(1, "XX");
+		assertNull(store.getResult(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPICode() {
+		SessionStore store = new SessionStore(new Resolver());
+		store.setRdsPiCode(1, "XXXX");
+	}
+
+	/*
+	 * Sessions survive growth and removal of other sessions
+	 */
+	@Test
+	public void testManySessions() {
+		SessionStore store = new SessionStore(new Resolver(), 16, 4);
+		for (long id = 0; id < 20000; id++) {
+			store.setIsoCountryCode(id, id % 2 == 0 ? "GB" : "CH");
+			store.setRdsPiCode(id, id % 2 == 0 ? "C479" : "4479");
+		}
+		for (long id = 0; id < 20000; id += 3) {
+			store.remove(id);
+		}
+		store.resolveAll();
+		assertEquals(20000 - 6667, store.size());
+		for (long id = 0; id < 20000; id++) {
+			int expected = id % 3 == 0 ? SessionStore.UNRESOLVED : id % 2 == 0 ? 0xCE1 : 0x4E1;
+			assertEquals(expected, store.getPackedGCC(id));
+		}
+	}
+}
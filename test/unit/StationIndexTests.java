@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.Station;
+import org.radiodns.countrycode.StationIndex;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class StationIndexTests {
+
+	private static final String STATIONS = "# test stations\n"
+			+ "ce1,C479,Capital London,fm:ce1.c479.09580;dab:ce1.c1ce.c479.0\n"
+			+ "de0,D479,Radio Beispiel,fm:de0.d479.09950\n"
+			+ "\n"
+			+ "ce1,C201,Old Name,fm:ce1.c201.10000\n"
+			+ "ce1,C201,Heart London\n"
+			+ "ce1,E1C0D001,Data Service,\n";
+
+	@Test
+	public void testLookup() throws IOException {
+		StationIndex index = load(STATIONS);
+		assertEquals(4, index.size());
+
+		Station station = index.lookup("CE1", "c479");
+		assertEquals(new Station("ce1", "c479", "Capital London",
+				Arrays.asList("fm:ce1.c479.09580", "dab:ce1.c1ce.c479.0")), station);
+		assertEquals(station, index.lookup(0xCE1, 0xC479));
+		assertEquals("Data Service", index.lookup("ce1", "E1C0D001").name);
+		assertEquals(Collections.<String>emptyList(), index.lookup("ce1", "E1C0D001").bearers);
+		assertNull(index.lookup("ce1", "C480"));
+		assertNull(index.lookup("de0", "C479"));
+	}
+
+	/*
+	 * A later line for the same service replaces the earlier one
+	 */
+	@Test
+	public void testReplace() throws IOException {
+		Station station = load(STATIONS).lookup("ce1", "C201");
+		assertEquals("Heart London", station.name);
+		assertEquals(Collections.<String>emptyList(), station.bearers);
+	}
+
+	@Test
+	public void testResolveStation() throws IOException, ResolutionException {
+		StationIndex index = load(STATIONS);
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("GB");
+		resolver.setRdsPiCode("C479");
+		assertEquals("Capital London", resolver.resolveStation(index).name);
+
+		// a German station received in Switzerland
+		resolver.setIsoCountryCode("CH");
+		resolver.setRdsPiCode("D479");
+		assertEquals("Radio Beispiel", resolver.resolveStation(index).name);
+
+		resolver.setDabSId("E1C0D001");
+		assertEquals("Data Service", resolver.resolveStation(index).name);
+	}
+
+	@Test(expected = ResolutionException.class)
+	public void testResolveUnknownStation() throws IOException, ResolutionException {
+		Resolver resolver = new Resolver();
+		resolver.setIsoCountryCode("GB");
+		resolver.setRdsPiCode("C480");
+		resolver.resolveStation(load(STATIONS));
+	}
+
+	/*
+	 * Hundreds of thousands of services remain reachable as the table grows
+	 */
+	@Test
+	public void testManyStations() throws IOException {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 300000; i++) {
+			csv.append(String.format("%03x,%08x,S%d,\n", 0x100 + i % 0xE00, i, i));
+		}
+		StationIndex index = load(csv.toString());
+		assertEquals(300000, index.size());
+		for (int i = 0; i < 300000; i += 997) {
+			assertEquals("S" + i, index.lookup(0x100 + i % 0xE00, i).name);
+		}
+		assertNull(index.lookup(0x100, 300000));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidEntry() throws IOException {
+		load("ce1,C47,Bad PI,\n");
+	}
+
+	private static StationIndex load(String csv) throws IOException {
+		return StationIndex.load(new ByteArrayInputStream(csv.getBytes("UTF-8")));
+	}
+}
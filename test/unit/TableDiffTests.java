@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.radiodns.countrycode.CountryTable;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Resolver;
+import org.radiodns.countrycode.SessionStore;
+import org.radiodns.countrycode.TableDiff;
+import org.radiodns.countrycode.TablePublisher;
+import org.radiodns.countrycode.TunerSession;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class TableDiffTests {
+
+	@Test
+	public void testIdenticalTables() throws IOException {
+		TableDiff diff = TableDiff.compare(CountryTable.load(), CountryTable.load());
+		assertTrue(diff.getChanges().toString(), diff.isEmpty());
+	}
+
+	/*
+	 * A new ECC for one country changes its own cells and those of its
+	 * neighbours using its Country ID, and nothing else
+	 */
+	@Test
+	public void testChangedEcc() throws IOException {
+		TableDiff diff = TableDiff.compare(CountryTable.load(), newEcc());
+
+		assertTrue(diff.getChanges().contains("ISO GB + C: [GB E1] -> [GB E2]"));
+		assertTrue(diff.isCountryChanged("GB", "C"));
+		assertTrue(diff.isCountryChanged("FR", "C"));
+		assertTrue(diff.isCountryChanged("IE", "C"));
+		assertFalse(diff.isCountryChanged("GB", "F"));
+		assertFalse(diff.isCountryChanged("CH", "4"));
+
+		assertTrue(diff.getChanges().contains("ECC E1 + C: [GB] -> []"));
+		assertTrue(diff.isEccChanged("E1", "C"));
+		assertTrue(diff.isEccChanged("e2", "c"));
+		assertFalse(diff.isEccChanged("E1", "4"));
+
+		assertTrue(diff.isMccChanged("234", "C"));
+		assertFalse(diff.isMccChanged("228", "4"));
+		assertTrue(diff.isCandidatesChanged("C"));
+		assertFalse(diff.isCandidatesChanged("4"));
+	}
+
+	/*
+	 * A new nearby country changes the searches of countries a hop away, even
+	 * where their own cells are unchanged
+	 */
+	@Test
+	public void testChangedNearbyCountries() throws IOException {
+		CountryTable table = new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("update", new ByteArrayInputStream(",GB,,,+F:NO\n".getBytes()))
+				.build();
+		TableDiff diff = TableDiff.compare(CountryTable.load(), table);
+
+		assertTrue(diff.isCountryChanged("GB", "F"));
+		assertTrue(diff.isCountryChanged("GB", "F", 1));
+		assertFalse(diff.isCountryChanged("IE", "F"));
+		assertFalse(diff.isCountryChanged("IE", "F", 1));
+		assertTrue(diff.isCountryChanged("IE", "F", 2));
+		assertTrue(diff.getChanges().toString(), diff.getChanges().contains(
+				"ISO IE + F within 2 hops: [FR E1] -> [FR E1, NO E2]"));
+		assertFalse(diff.isCountryChanged("IE", "C", 2));
+	}
+
+	@Test
+	public void testSessionStore() throws IOException {
+		TablePublisher publisher = new TablePublisher(CountryTable.load());
+		SessionStore store = new SessionStore(new Resolver(publisher.getTable()));
+		publisher.addListener(store);
+
+		store.setIsoCountryCode(1, "GB");
+		store.setRdsPiCode(1, "C479");
+		store.setIsoCountryCode(2, "CH");
+		store.setRdsPiCode(2, "4479");
+		store.setExtendedCountryCode(3, "E1");
+		store.setRdsPiCode(3, "C479");
+		assertEquals(0xCE1, store.getPackedGCC(1));
+
+		publisher.publish(newEcc());
+		assertEquals(0xCE2, store.getPackedGCC(1));
+		assertEquals(0x4E1, store.getPackedGCC(2));
+		assertEquals(SessionStore.UNRESOLVED, store.getPackedGCC(3));
+
+		// new updates use the new table
+		store.setIsoCountryCode(4, "IE");
+		store.setRdsPiCode(4, "C479");
+		assertEquals(0xCE2, store.getPackedGCC(4));
+	}
+
+	/*
+	 * A diff taken from a table other than the one in use resolves every
+	 * session again
+	 */
+	@Test
+	public void testSessionStoreStaleDiff() throws IOException {
+		SessionStore store = new SessionStore(new Resolver(newEcc()));
+		store.setIsoCountryCode(1, "GB");
+		store.setRdsPiCode(1, "C479");
+		assertEquals(0xCE2, store.getPackedGCC(1));
+
+		// no cells differ between these two tables, but both differ from the
+		// table the store is using
+		TablePublisher publisher = new TablePublisher(CountryTable.load());
+		publisher.addListener(store);
+		assertTrue(publisher.publish(CountryTable.load()).isEmpty());
+		assertEquals(0xCE1, store.getPackedGCC(1));
+	}
+
+	@Test
+	public void testTunerSession() throws IOException, ResolutionException {
+		TablePublisher publisher = new TablePublisher(CountryTable.load());
+		TunerSession changed = new TunerSession(new Resolver(publisher.getTable()));
+		TunerSession unchanged = new TunerSession(new Resolver(publisher.getTable()));
+		publisher.addListener(changed);
+		publisher.addListener(unchanged);
+
+		changed.setIsoCountryCode("GB");
+		changed.setRdsPiCode("C479");
+		assertEquals("ce1", changed.resolveGCC().get(0).gcc);
+		unchanged.setIsoCountryCode("CH");
+		unchanged.setRdsPiCode("4479");
+		assertEquals("4e1", unchanged.resolveGCC().get(0).gcc);
+
+		publisher.publish(newEcc());
+		assertEquals("ce2", changed.resolveGCC().get(0).gcc);
+		assertTrue(changed.hasResultChanged());
+		assertEquals("4e1", unchanged.resolveGCC().get(0).gcc);
+		assertFalse(unchanged.hasResultChanged());
+
+		// later resolutions use the new table
+		unchanged.setIsoCountryCode("GB");
+		unchanged.setRdsPiCode("C201");
+		assertEquals("ce2", unchanged.resolveGCC().get(0).gcc);
+	}
+
+	private static CountryTable newEcc() throws IOException {
+		return new CountryTable.Builder()
+				.addDefaultLayer()
+				.addLayer("update", new ByteArrayInputStream("United Kingdom,GB,E2,,\n".getBytes()))
+				.build();
+	}
+}
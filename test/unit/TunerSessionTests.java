@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014 Global Radio UK Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.radiodns.countrycode.ResolutionException;
+import org.radiodns.countrycode.Result;
+import org.radiodns.countrycode.TunerSession;
+
+/**
+ * @author Byrion Smith <byrion.smith@thisisglobal.com>
+ * @version 1.0
+ */
+public class TunerSessionTests {
+
+	/*
+	 * Unchanged location and Country ID return the cached result
+	 */
+	@Test
+	public void testCachedResult() throws ResolutionException {
+		TunerSession session = new TunerSession();
+		session.setIsoCountryCode("CH");
+		session.setRdsPiCode("D479");
+		List<Result> first = session.resolveGCC();
+		assertTrue(session.hasResultChanged());
+		assertEquals(new Result("D", "E0", "DE"), first.get(0));
+
+		session.setIsoCountryCode("CH");
+		session.setRdsPiCode("D3A1");
+		assertSame("Same Country ID must return the cached result", first, session.resolveGCC());
+		assertFalse(session.hasResultChanged());
+
+		session.setRdsPiCode("4479");
+		assertEquals(new Result("4", "E1", "CH"), session.resolveGCC().get(0));
+		assertTrue(session.hasResultChanged());
+	}
+
+	/*
+	 * A new country is only accepted after the configured observations
+	 */
+	@Test
+	public void testObservationHysteresis() throws ResolutionException {
+		TunerSession session = new TunerSession();
+		session.setHysteresis(0, 3);
+		session.setRdsPiCode("4479");
+		session.setIsoCountryCode("CH", 0);
+		session.setIsoCountryCode("DE", 1);
+		session.setIsoCountryCode("DE", 2);
+		assertEquals("CH", session.getIsoCountryCode());
+		assertEquals(new Result("4", "E1", "CH"), session.resolveGCC().get(0));
+
+		session.setIsoCountryCode("DE", 3);
+		assertEquals("DE", session.getIsoCountryCode());
+		assertEquals(new Result("4", "E1", "CH"), session.resolveGCC().get(0));
+		assertFalse("Neighbouring result must be unchanged", session.hasResultChanged());
+	}
+
+	/*
+	 * Flapping between two countries within the dwell time is ignored
+	 */
+	@Test
+	public void testDwellTimeHysteresis() {
+		TunerSession session = new TunerSession();
+		session.setHysteresis(10000, 1);
+		session.setIsoCountryCode("GB", 0);
+		session.setIsoCountryCode("IE", 1000);
+		session.setIsoCountryCode("GB", 2000);
+		session.setIsoCountryCode("IE", 9000);
+		assertEquals("GB", session.getIsoCountryCode());
+		session.setIsoCountryCode("IE", 15000);
+		assertEquals("GB", session.getIsoCountryCode());
+		session.setIsoCountryCode("IE", 19000);
+		assertEquals("IE", session.getIsoCountryCode());
+	}
+
+	/*
+	 * ECC from broadcast takes effect immediately
+	 */
+	@Test
+	public void testEccBypassesHysteresis() throws ResolutionException {
+		TunerSession session = new TunerSession();
+		session.setHysteresis(10000, 5);
+		session.setIsoCountryCode("GB", 0);
+		session.setDabSId("E0D12345");
+		assertEquals(new Result("D", "E0", "DE"), session.resolveGCC().get(0));
+	}
+}